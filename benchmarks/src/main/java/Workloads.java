@@ -0,0 +1,278 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The operations measured by the benchmarks in the bench package. <br>
+ * JMH refuses benchmark classes in the default package, and classes in a named
+ *  package can't see the game's classes, so the engine calls are made here and
+ *  handed over as plain java.util.function objects, see bench.Engine.
+ * Each workload returns a value so that JMH can sink it.
+ * @author huynhstin
+ */
+
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * @param size rows x cols x mines, e.g. "16x30x99"; the mines can be left out
+     * @return {rows, cols, mines}
+     */
+    private static int[] parse(String size) {
+        String[] parts = size.split("x");
+        return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                parts.length > 2 ? Integer.parseInt(parts[2]) : 0};
+    }
+
+    /**
+     * Allocate a new game; no mines are placed until the first move.
+     */
+    static IntSupplier newGame(String size) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        return () -> new Minesweeper(dim[0], dim[1], dim[2], random.nextLong()).getRows();
+    }
+
+    /**
+     * Pick mine locations with the given density, without touching a board.
+     */
+    static IntSupplier placeMines(String size, double density) {
+        int[] dim = parse(size);
+        int mines = (int) (dim[0] * dim[1] * density);
+        Random random = new Random(1);
+        return () -> MinePlacer.place(dim[0], dim[1], mines, dim[0] / 2, dim[1] / 2,
+                MinePlacer.SafeZone.CELL, random).length;
+    }
+
+    /**
+     * New game plus the first click in the middle: mine generation, numbering and the opening cascade.
+     */
+    static IntSupplier firstClick(String size) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        return () -> {
+            Minesweeper game = new Minesweeper(dim[0], dim[1], dim[2], random.nextLong());
+            game.reveal(dim[0] / 2, dim[1] / 2);
+            return game.getStatus().ordinal();
+        };
+    }
+
+    /**
+     * Like {@link #firstClick(String)}, on a board of the given kind: "bytes" for the
+     *  {@link ByteBoard} games are played on, or "cells" for a {@link CellBoard}, a Cell object per cell.
+     */
+    static IntSupplier firstClick(String size, String board) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        boolean cells = board.equals("cells");
+        return () -> {
+            Board fresh = cells ? new CellBoard(dim[0], dim[1]) : new ByteBoard(dim[0], dim[1]);
+            Minesweeper game = new Minesweeper(fresh, dim[2], random.nextLong());
+            game.reveal(dim[0] / 2, dim[1] / 2);
+            return game.getStatus().ordinal();
+        };
+    }
+
+    /**
+     * Like {@link #firstClick(String)}, but resetting one game in place instead of allocating a new one.
+     */
+    static IntSupplier resetFirstClick(String size) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        Minesweeper game = new Minesweeper(dim[0], dim[1], dim[2], random.nextLong());
+        return () -> {
+            game.reset(random.nextLong());
+            game.reveal(dim[0] / 2, dim[1] / 2);
+            return game.getStatus().ordinal();
+        };
+    }
+
+    /**
+     * Measure 3BV, openings and isolated numbers of a board whose mines are placed.
+     */
+    static IntSupplier analyze(String size) {
+        Minesweeper game = startedGame(size);
+        BoardAnalyzer analyzer = new BoardAnalyzer();
+        return () -> {
+            analyzer.analyze(game.getBoard());
+            return analyzer.getBbbv();
+        };
+    }
+
+    /**
+     * Worst case flood fill: a board with a single mine, so one click reveals
+     *  nearly every cell. Each call to the supplier sets up a fresh game
+     *  (not measured) and returns the click to measure.
+     */
+    static Supplier<IntSupplier> floodFill(String size) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        return () -> {
+            Minesweeper game = new Minesweeper(dim[0], dim[1], 1, random.nextLong());
+            return () -> {
+                game.move(dim[0] / 2, dim[1] / 2);
+                return game.getToPaint().getMaxRow();
+            };
+        };
+    }
+
+    /**
+     * Like {@link #floodFill(String)}, but filling on the common fork/join pool, see {@link TiledFloodFill}.
+     *  Boards under {@link Minesweeper#PARALLEL_FILL_CELLS} cells fill on the calling thread anyway.
+     */
+    static Supplier<IntSupplier> parallelFloodFill(String size) {
+        int[] dim = parse(size);
+        Random random = new Random(1);
+        return () -> {
+            Minesweeper game = new Minesweeper(dim[0], dim[1], 1, random.nextLong());
+            game.setParallelFill(ForkJoinPool.commonPool());
+            return () -> {
+                game.move(dim[0] / 2, dim[1] / 2);
+                return game.getToPaint().getMaxRow();
+            };
+        };
+    }
+
+    /**
+     * Flag and un-flag a hidden cell of a game in progress.
+     */
+    static IntSupplier flag(String size) {
+        Minesweeper game = startedGame(size);
+        int[] cell = hiddenCell(game);
+        return () -> {
+            game.flag(cell[0], cell[1]);
+            game.flag(cell[0], cell[1]);
+            return game.getFlagsLeft();
+        };
+    }
+
+    /**
+     * Check for a win on a game in progress, as MinesUI does after every click.
+     */
+    static IntSupplier checkWin(String size) {
+        Minesweeper game = startedGame(size);
+        return () -> game.checkWin() ? 1 : 0;
+    }
+
+    /**
+     * Search for a no-guess board around a first click in the middle, with the given number of worker threads.
+     */
+    static IntSupplier noGuess(String size, int threads) {
+        int[] dim = parse(size);
+        NoGuessGenerator generator = new NoGuessGenerator(threads, 10_000);
+        Random random = new Random(1);
+        return () -> (int) generator.find(dim[0], dim[1], dim[2], dim[0] / 2, dim[1] / 2,
+                MinePlacer.SafeZone.OPENING, random.nextLong()).getAttempts();
+    }
+
+    /**
+     * Attach a solver to a game after its first click and deduce everything it can.
+     *  Cycles through a set of prepared games so the solver sees different positions.
+     */
+    static IntSupplier solve(String size) {
+        int[] dim = parse(size);
+        Minesweeper[] games = new Minesweeper[256];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = new Minesweeper(dim[0], dim[1], dim[2], i);
+            games[i].setSafeZone(MinePlacer.SafeZone.OPENING);
+            games[i].reveal(dim[0] / 2, dim[1] / 2);
+        }
+        int[] next = {0};
+        return () -> {
+            Solver solver = new Solver(games[next[0]++ & (games.length - 1)]);
+            return solver.solve();
+        };
+    }
+
+    /**
+     * Compute the mine probabilities of positions where the solver got stuck and a guess is needed.
+     *  Cycles through a set of prepared positions like {@link #solve(String)}.
+     */
+    static IntSupplier probability(String size) {
+        int[] dim = parse(size);
+        MineProbability[] positions = new MineProbability[256];
+        int count = 0;
+        for (long seed = 0; count < positions.length; seed++) {
+            Minesweeper game = new Minesweeper(dim[0], dim[1], dim[2], seed);
+            game.setSafeZone(MinePlacer.SafeZone.OPENING);
+            game.reveal(dim[0] / 2, dim[1] / 2);
+            Solver solver = new Solver(game);
+            if (solver.play() == Minesweeper.Status.PLAYING) {
+                positions[count++] = new MineProbability(game, solver);
+            }
+        }
+        int[] next = {0};
+        return () -> {
+            MineProbability probability = positions[next[0]++ & (positions.length - 1)];
+            probability.compute();
+            return probability.safest();
+        };
+    }
+
+    /**
+     * Count the mines around every cell of a board, the way the numbers are worked out, walking
+     *  the neighbours either with a bounds check per neighbour ("bounds") or with the
+     *  precomputed offsets of {@link Neighbours} ("tables").
+     */
+    static IntSupplier countMines(String size, String walk) {
+        Minesweeper game = startedGame(size);
+        Board board = game.getBoard();
+        Neighbours neighbours = game.getNeighbours();
+        int rows = game.getRows();
+        int cols = game.getCols();
+        if (walk.equals("bounds")) {
+            return () -> {
+                int total = 0;
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
+                        for (int nr = r - 1; nr <= r + 1; nr++) {
+                            for (int nc = c - 1; nc <= c + 1; nc++) {
+                                if ((nr != r || nc != c) && nr >= 0 && nr < rows && nc >= 0 && nc < cols
+                                        && board.isMine(nr * cols + nc)) {
+                                    total++;
+                                }
+                            }
+                        }
+                    }
+                }
+                return total;
+            };
+        }
+        return () -> {
+            int total = 0;
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    int index = r * cols + c;
+                    for (int offset : neighbours.of(r, c)) {
+                        if (board.isMine(index + offset)) {
+                            total++;
+                        }
+                    }
+                }
+            }
+            return total;
+        };
+    }
+
+    private static Minesweeper startedGame(String size) {
+        int[] dim = parse(size);
+        Minesweeper game = new Minesweeper(dim[0], dim[1], dim[2], 1);
+        game.setSafeZone(MinePlacer.SafeZone.OPENING);
+        game.reveal(dim[0] / 2, dim[1] / 2);
+        game.getToPaint().clear();
+        return game;
+    }
+
+    private static int[] hiddenCell(Minesweeper game) {
+        for (int r = 0; r < game.getRows(); r++) {
+            for (int c = 0; c < game.getCols(); c++) {
+                if (game.getState(r, c) == Cell.State.HIDDEN) {
+                    return new int[] {r, c};
+                }
+            }
+        }
+        throw new IllegalStateException("No hidden cell left");
+    }
+}
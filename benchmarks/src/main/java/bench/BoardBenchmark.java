@@ -0,0 +1,76 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Board creation and the first click (mine generation + opening cascade)
+ *  for Beginner, Intermediate, Expert and large custom boards, on a new
+ *  game and on a game reset in place, and the 3BV analysis of a board.
+ *  The first click is also made on a CellBoard, a Cell object per cell,
+ *  to compare with the byte per cell that games are played on.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    @Param({"9x9x10", "16x16x40", "16x30x99", "1000x1000x150000"})
+    public String size;
+
+    private IntSupplier newGame;
+    private IntSupplier firstClick;
+    private IntSupplier firstClickCells;
+    private IntSupplier resetFirstClick;
+    private IntSupplier analyze;
+
+    @Setup
+    public void setup() {
+        newGame = Engine.workload("newGame", size);
+        firstClick = Engine.workload("firstClick", size);
+        firstClickCells = Engine.workload("firstClick", size, "cells");
+        resetFirstClick = Engine.workload("resetFirstClick", size);
+        analyze = Engine.workload("analyze", size);
+    }
+
+    @Benchmark
+    public int newGame() {
+        return newGame.getAsInt();
+    }
+
+    @Benchmark
+    public int firstClick() {
+        return firstClick.getAsInt();
+    }
+
+    @Benchmark
+    public int firstClickCells() {
+        return firstClickCells.getAsInt();
+    }
+
+    @Benchmark
+    public int resetFirstClick() {
+        return resetFirstClick.getAsInt();
+    }
+
+    @Benchmark
+    public int analyze() {
+        return analyze.getAsInt();
+    }
+}
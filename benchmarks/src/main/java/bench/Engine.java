@@ -0,0 +1,36 @@
+package bench;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Looks up workloads from the default package Workloads class, see its documentation.
+ * @author huynhstin
+ */
+
+final class Engine {
+    private Engine() {
+    }
+
+    /**
+     * Call the static Workloads method with the given name.
+     * @param name method name
+     * @param args arguments, matched by count
+     * @return whatever the method returned
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T workload(String name, Object... args) {
+        try {
+            Class<?> workloads = Class.forName("Workloads");
+            for (Method method : workloads.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                    method.setAccessible(true);
+                    return (T) method.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("No workload " + name + Arrays.toString(args));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not set up workload " + name, e);
+        }
+    }
+}
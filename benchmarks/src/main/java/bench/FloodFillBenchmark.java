@@ -0,0 +1,65 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Worst case cascade: one click that reveals almost the whole board.
+ *  The game is rebuilt before every invocation, outside of the measurement;
+ *  the boards are big enough for that to be fine with JMH. <br>
+ * parallelFloodFill is the same click split over the common fork/join pool,
+ *  which only pays on boards of a million cells or more, with more than one core.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FloodFillBenchmark {
+    @Param({"16x30x1", "1000x1000x1", "4000x4000x1", "5000x5000x1"})
+    public String size;
+
+    private Supplier<IntSupplier> games;
+    private Supplier<IntSupplier> parallelGames;
+    private IntSupplier click;
+    private IntSupplier parallelClick;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        games = Engine.workload("floodFill", size);
+        parallelGames = Engine.workload("parallelFloodFill", size);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        click = games.get();
+        parallelClick = parallelGames.get();
+    }
+
+    @Benchmark
+    public int floodFill() {
+        return click.getAsInt();
+    }
+
+    @Benchmark
+    public int parallelFloodFill() {
+        return parallelClick.getAsInt();
+    }
+}
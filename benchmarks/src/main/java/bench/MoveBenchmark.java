@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cheap per-click operations: flagging and win detection on a game in progress.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    @Param({"9x9x10", "16x16x40", "16x30x99", "1000x1000x150000"})
+    public String size;
+
+    private IntSupplier flag;
+    private IntSupplier checkWin;
+
+    @Setup
+    public void setup() {
+        flag = Engine.workload("flag", size);
+        checkWin = Engine.workload("checkWin", size);
+    }
+
+    @Benchmark
+    public int flag() {
+        return flag.getAsInt();
+    }
+
+    @Benchmark
+    public int checkWin() {
+        return checkWin.getAsInt();
+    }
+}
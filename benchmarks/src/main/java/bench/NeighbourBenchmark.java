@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Walking the neighbours of every cell of a board: with a bounds check per neighbour, as the
+ *  engine used to, against the precomputed offset tables it uses now.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourBenchmark {
+    @Param({"16x30x99", "1000x1000x150000"})
+    public String size;
+
+    private IntSupplier bounds;
+    private IntSupplier tables;
+
+    @Setup
+    public void setup() {
+        bounds = Engine.workload("countMines", size, "bounds");
+        tables = Engine.workload("countMines", size, "tables");
+    }
+
+    @Benchmark
+    public int boundsChecked() {
+        return bounds.getAsInt();
+    }
+
+    @Benchmark
+    public int offsetTables() {
+        return tables.getAsInt();
+    }
+}
@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding a board that can be solved without guessing, on one worker thread and on all cores.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoGuessBenchmark {
+    @Param({"9x9x10", "16x16x40", "16x30x99"})
+    public String size;
+
+    @Param({"1", "0"})
+    public int threads; // 0: one per core
+
+    private IntSupplier noGuess;
+
+    @Setup
+    public void setup() {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        noGuess = Engine.workload("noGuess", size, workers);
+    }
+
+    @Benchmark
+    public int noGuess() {
+        return noGuess.getAsInt();
+    }
+}
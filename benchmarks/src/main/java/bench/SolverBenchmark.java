@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deducing every safe cell and mine of a position right after the first click,
+ *  and the exact mine probabilities of a position where the solver has to guess.
+ * @author huynhstin
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+    @Param({"9x9x10", "16x16x40", "16x30x99"})
+    public String size;
+
+    private IntSupplier solve;
+    private IntSupplier probability;
+
+    @Setup
+    public void setup() {
+        solve = Engine.workload("solve", size);
+        probability = Engine.workload("probability", size);
+    }
+
+    @Benchmark
+    public int solve() {
+        return solve.getAsInt();
+    }
+
+    @Benchmark
+    public int probability() {
+        return probability.getAsInt();
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Board that many threads can play on at once: the packed cells (see {@link PackedBoard})
+ *  are kept four to an int in an {@link AtomicIntegerArray}, so a cell's state can be
+ *  changed with a compare-and-set instead of a lock, see {@link #compareAndSetState}. <br>
+ * {@link #set(int, byte)} is atomic too, so writers never lose each other's changes to the
+ *  other cells of the same int. {@link #clear()} is not; only call it when nobody is playing.
+ * @author huynhstin
+ */
+
+final class AtomicBoard extends PackedBoard {
+    private final AtomicIntegerArray cells;
+
+    AtomicBoard(int rows, int cols) {
+        super(rows, cols);
+        cells = new AtomicIntegerArray((int) (((long) rows * cols + 3) >> 2));
+    }
+
+    @Override
+    byte get(int index) {
+        return (byte) (cells.get(index >> 2) >>> shift(index));
+    }
+
+    @Override
+    void set(int index, byte cell) {
+        int shift = shift(index);
+        int word;
+        do {
+            word = cells.get(index >> 2);
+        } while (!cells.compareAndSet(index >> 2, word, word & ~(0xFF << shift) | (cell & 0xFF) << shift));
+    }
+
+    /**
+     * Change the state of a cell only if it is in the expected state, atomically.
+     *  Of several threads making the same change, exactly one succeeds.
+     * @param index index of the cell
+     * @param expect state the cell must be in
+     * @param update state to change it to
+     * @return whether the cell was changed
+     */
+    boolean compareAndSetState(int index, Cell.State expect, Cell.State update) {
+        int shift = shift(index);
+        while (true) {
+            int word = cells.get(index >> 2);
+            if ((word >>> shift & STATE_MASK) != expect.ordinal()) {
+                return false;
+            }
+            int changed = word & ~(STATE_MASK << shift) | update.ordinal() << shift;
+            if (cells.compareAndSet(index >> 2, word, changed)) {
+                return true;
+            }
+            // another cell of the same int changed; try again
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+
+    private static int shift(int index) {
+        return (index & 3) << 3;
+    }
+}
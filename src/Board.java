@@ -0,0 +1,54 @@
+/**
+ * Storage for the cells of a Minesweeper board. <br>
+ * Cells are addressed by a linear index, see {@link #index(int, int)}, so that the
+ *  game logic can keep work lists of plain ints. Implementations only store
+ *  state; the rules of the game live in Minesweeper.
+ * @author huynhstin
+ */
+
+interface Board {
+    int getRows();
+
+    int getCols();
+
+    /**
+     * @param r row
+     * @param c col
+     * @return linear index of the cell, r * cols + c
+     */
+    default int index(int r, int c) {
+        return r * getCols() + c;
+    }
+
+    default int row(int index) {
+        return index / getCols();
+    }
+
+    default int col(int index) {
+        return index % getCols();
+    }
+
+    Cell.State getState(int index);
+
+    void setState(int index, Cell.State state);
+
+    boolean isMine(int index);
+
+    /**
+     * @return -1 for mines, otherwise the number of adjacent mines
+     */
+    int getValue(int index);
+
+    void makeMine(int index);
+
+    /**
+     * Increment the value of the cell, to be used when generating the board. <br>
+     * Do not increment the cell if it is a mine.
+     */
+    void increase(int index);
+
+    /**
+     * Make every cell a hidden, empty non-mine again, so the board can be reused for a new game.
+     */
+    void clear();
+}
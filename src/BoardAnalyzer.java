@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+/**
+ * Difficulty metrics of a board whose mines have been placed, computed in one
+ *  linear pass over the cells:
+ * <P> Openings: connected regions of empty (0) cells. Each empty cell is joined to the empty
+ *     neighbours already visited (west, north-west, north and north-east) in a union-find
+ *     over cell indices, and every join that merges two regions takes one off the count. <br>
+ *     Isolated numbers: numbered cells with no empty neighbour, which need a click of their own.
+ *     The rows above and below the current one are kept in small buffers, so every cell
+ *     is read from the board once. <br>
+ *     3BV: openings plus isolated numbers, the fewest clicks that clear the board. </P>
+ * The union-find array and row buffers are kept between calls, so analyzing board after board allocates nothing.
+ *  Not thread-safe.
+ * @author huynhstin
+ */
+
+public final class BoardAnalyzer {
+    private int[] parent = new int[0];
+    // Values of the rows above, at and below the one being scanned, and whether each
+    //  column of those rows has an empty cell within one column
+    private byte[] above = new byte[0];
+    private byte[] row = new byte[0];
+    private byte[] below = new byte[0];
+    private boolean[] emptyAbove = new boolean[0];
+    private boolean[] emptyRow = new boolean[0];
+    private boolean[] emptyBelow = new boolean[0];
+
+    private int cells;
+    private int mines;
+    private int emptyCells;
+    private int openings;
+    private int openingBorder;
+    private int isolatedNumbers;
+
+    /**
+     * Analyze a board, replacing the results of the previous call.
+     * @param board board with its mines and numbers in place
+     */
+    public void analyze(Board board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        cells = rows * cols;
+        if (parent.length < cells) {
+            parent = new int[cells];
+        }
+        if (above.length < cols) {
+            above = new byte[cols];
+            row = new byte[cols];
+            below = new byte[cols];
+            emptyAbove = new boolean[cols];
+            emptyRow = new boolean[cols];
+            emptyBelow = new boolean[cols];
+        }
+        mines = 0;
+        emptyCells = 0;
+        openings = 0;
+        openingBorder = 0;
+        isolatedNumbers = 0;
+
+        // Each cell is read from the board once, into a window of three rows
+        // Off the board counts as a row of mines, so the edges need no special cases
+        Arrays.fill(above, 0, cols, (byte) -1);
+        Arrays.fill(emptyAbove, 0, cols, false);
+        load(board, 0, cols, row, emptyRow);
+        for (int r = 0; r < rows; r++) {
+            if (r + 1 < rows) {
+                load(board, (r + 1) * cols, cols, below, emptyBelow);
+            } else {
+                Arrays.fill(below, 0, cols, (byte) -1);
+                Arrays.fill(emptyBelow, 0, cols, false);
+            }
+            for (int c = 0; c < cols; c++) {
+                int index = r * cols + c;
+                int value = row[c];
+                if (value < 0) {
+                    mines++;
+                } else if (value == 0) {
+                    emptyCells++;
+                    openings++;
+                    parent[index] = index;
+                    openings -= joinVisited(index, c, cols);
+                } else if (emptyAbove[c] || emptyRow[c] || emptyBelow[c]) {
+                    openingBorder++;
+                } else {
+                    isolatedNumbers++;
+                }
+            }
+            byte[] values = above;
+            above = row;
+            row = below;
+            below = values;
+            boolean[] empty = emptyAbove;
+            emptyAbove = emptyRow;
+            emptyRow = emptyBelow;
+            emptyBelow = empty;
+        }
+    }
+
+    /**
+     * Join an empty cell to the empty neighbours visited before it. Neighbours that are
+     *  next to each other are already joined, so at most two joins are needed: the cell
+     *  above covers both upper corners and the cell to the left, and the cell to the
+     *  left covers the upper left corner.
+     * @return how many regions were merged into this cell's
+     */
+    private int joinVisited(int index, int c, int cols) {
+        if (above[c] == 0) {
+            return union(index, index - cols) ? 1 : 0;
+        }
+        int merged = 0;
+        if (c > 0 && row[c - 1] == 0) {
+            merged += union(index, index - 1) ? 1 : 0;
+        } else if (c > 0 && above[c - 1] == 0) {
+            merged += union(index, index - cols - 1) ? 1 : 0;
+        }
+        if (c + 1 < cols && above[c + 1] == 0) {
+            merged += union(index, index - cols + 1) ? 1 : 0;
+        }
+        return merged;
+    }
+
+    /**
+     * Read one row of values, and for each column whether the row has an empty
+     *  cell in that column or the ones next to it.
+     */
+    private static void load(Board board, int start, int cols, byte[] values, boolean[] empty) {
+        for (int c = 0; c < cols; c++) {
+            values[c] = (byte) board.getValue(start + c);
+        }
+        for (int c = 0; c < cols; c++) {
+            empty[c] = values[c] == 0 || (c > 0 && values[c - 1] == 0) || (c + 1 < cols && values[c + 1] == 0);
+        }
+    }
+
+    /**
+     * Join the regions of two empty cells; the root with the lower index wins.
+     * @return whether they were in different regions
+     */
+    private boolean union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return false;
+        }
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else {
+            parent[rootA] = rootB;
+        }
+        return true;
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * @return fewest clicks that clear the board: openings plus isolated numbers
+     */
+    public int getBbbv() {
+        return openings + isolatedNumbers;
+    }
+
+    /**
+     * @return connected regions of empty cells
+     */
+    public int getOpenings() {
+        return openings;
+    }
+
+    /**
+     * @return numbered cells with no empty neighbour
+     */
+    public int getIsolatedNumbers() {
+        return isolatedNumbers;
+    }
+
+    /**
+     * @return cells revealed by clicking every opening: the empty cells and the numbers around them
+     */
+    public int getOpeningCells() {
+        return emptyCells + openingBorder;
+    }
+
+    /**
+     * @return 3BV per safe cell; lower means the openings do more of the work
+     */
+    public double getBbbvDensity() {
+        int safe = cells - mines;
+        return safe == 0 ? 0 : (double) getBbbv() / safe;
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.Arrays;
+
+/**
+ * Compact board that keeps its packed cells (see {@link PackedBoard}) in one byte array.
+ * One flat array keeps neighbouring cells close together in memory, so boards
+ *  of tens of millions of cells fit in the heap and neighbour scans stay cheap.
+ * @author huynhstin
+ */
+
+class ByteBoard extends PackedBoard {
+    static final int MAX_CELLS = Integer.MAX_VALUE - 8; // the biggest array the VM will allocate
+    private final byte[] cells;
+
+    /**
+     * @throws IllegalArgumentException if the board is empty or has more than {@link #MAX_CELLS} cells
+     */
+    ByteBoard(int rows, int cols) {
+        super(rows, cols);
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Board must have at least one row and column");
+        }
+        if ((long) rows * cols > MAX_CELLS) {
+            throw new IllegalArgumentException("Boards in memory are limited to " + MAX_CELLS + " cells");
+        }
+        cells = new byte[rows * cols];
+    }
+
+    @Override
+    byte get(int index) {
+        return cells[index];
+    }
+
+    @Override
+    void set(int index, byte cell) {
+        cells[index] = cell;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(cells, (byte) 0); // HIDDEN is state 0
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Board backed by one Cell object per slot.
+ * @author huynhstin
+ */
+
+class CellBoard implements Board {
+    private final int rows;
+    private final int cols;
+    private final Cell[][] cells;
+
+    CellBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        cells = new Cell[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                cells[r][c] = new Cell();
+            }
+        }
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    private Cell cell(int index) {
+        return cells[index / cols][index % cols];
+    }
+
+    @Override
+    public Cell.State getState(int index) {
+        return cell(index).getState();
+    }
+
+    @Override
+    public void setState(int index, Cell.State state) {
+        cell(index).setState(state);
+    }
+
+    @Override
+    public boolean isMine(int index) {
+        return cell(index).isMine();
+    }
+
+    @Override
+    public int getValue(int index) {
+        return cell(index).getValue();
+    }
+
+    @Override
+    public void makeMine(int index) {
+        cell(index).makeMine();
+    }
+
+    @Override
+    public void increase(int index) {
+        cell(index).increase();
+    }
+
+    @Override
+    public void clear() {
+        for (Cell[] row : cells) {
+            for (Cell cell : row) {
+                cell.clear();
+            }
+        }
+    }
+}
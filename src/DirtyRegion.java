@@ -0,0 +1,115 @@
+/**
+ * Tracks which cells changed since the UI last painted. <br>
+ * Changed cells are kept as indices in a primitive buffer and folded into a
+ *  bounding rectangle, so a whole cascade can be repainted with one request and
+ *  nothing is allocated per cell. Past {@link #MAX_INDICES} cells the indices
+ *  are dropped and only the rectangle is kept, so a huge cascade can't blow up the buffer.
+ * @author huynhstin
+ */
+
+final class DirtyRegion {
+    static final int MAX_INDICES = 1 << 16;
+    private final int cols;
+    private final IntList indices = new IntList();
+    private boolean overflowed = false;
+    private int minRow = Integer.MAX_VALUE;
+    private int minCol = Integer.MAX_VALUE;
+    private int maxRow = -1;
+    private int maxCol = -1;
+
+    /**
+     * @param cols number of columns of the board, to turn indices into coordinates
+     */
+    DirtyRegion(int cols) {
+        this.cols = cols;
+    }
+
+    /**
+     * Mark a cell as changed.
+     * @param index index of the cell, r * cols + c
+     */
+    void add(int index) {
+        int r = index / cols;
+        int c = index - r * cols;
+        if (r < minRow) {
+            minRow = r;
+        }
+        if (r > maxRow) {
+            maxRow = r;
+        }
+        if (c < minCol) {
+            minCol = c;
+        }
+        if (c > maxCol) {
+            maxCol = c;
+        }
+        if (!overflowed) {
+            if (indices.size() < MAX_INDICES) {
+                indices.add(index);
+            } else {
+                overflowed = true;
+                indices.clear();
+            }
+        }
+    }
+
+    /**
+     * Mark a rectangle of cells as changed without listing them, as if the region had overflowed.
+     * @param top first row
+     * @param left first col
+     * @param bottom last row
+     * @param right last col
+     */
+    void addArea(int top, int left, int bottom, int right) {
+        minRow = Math.min(minRow, top);
+        minCol = Math.min(minCol, left);
+        maxRow = Math.max(maxRow, bottom);
+        maxCol = Math.max(maxCol, right);
+        overflowed = true;
+        indices.clear();
+    }
+
+    boolean isEmpty() {
+        return maxRow < 0;
+    }
+
+    int getMinRow() {
+        return minRow;
+    }
+
+    int getMinCol() {
+        return minCol;
+    }
+
+    int getMaxRow() {
+        return maxRow;
+    }
+
+    int getMaxCol() {
+        return maxCol;
+    }
+
+    /**
+     * @return whether there were too many changes to keep their indices;
+     *          if so, only the bounding rectangle is known
+     */
+    boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * @return indices of the changed cells, in the order they changed. Empty if overflowed.
+     */
+    IntList getIndices() {
+        return indices;
+    }
+
+    void clear() {
+        indices.clear();
+        overflowed = false;
+        minRow = Integer.MAX_VALUE;
+        minCol = Integer.MAX_VALUE;
+        maxRow = -1;
+        maxCol = -1;
+    }
+}
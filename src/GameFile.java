@@ -0,0 +1,373 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Saves and loads a whole game in a compact binary file, through NIO file channels.
+ * <P> Layout (big-endian), version 1: <br>
+ *     magic "MSWP", version (short), flags (byte: marks, started, lost, won), safe zone (byte) <br>
+ *     rows, cols, mines (ints), seed (long), elapsed seconds, last clicked cell,
+ *     clicks, 3BV cleared (ints) <br>
+ *     if started: the mines, one bit per cell, lowest bit first <br>
+ *     the cell states, two bits per cell (the ordinal of {@link Cell.State}), lowest bits first </P>
+ * <P> A 10 million cell board takes about 1.25 MB of mines and 2.5 MB of states. The numbers
+ *     aren't saved; they are worked out from the mines when loading. Both bitmaps are
+ *     streamed through one small buffer, so saving and loading don't need another copy
+ *     of the board in memory. </P>
+ * <P> Games too big for the heap can be played on a {@link MappedBoard} instead, see
+ *     {@link #createMapped}: the file is the board itself, one byte per cell, and the header
+ *     after the board's own holds the rest of the game (big-endian): <br>
+ *     version (short), flags, safe zone (bytes), mines, mines placed (ints), seed (long),
+ *     elapsed seconds, last clicked cell, cells revealed, flags, correct flags, clicks,
+ *     3BV cleared (ints) <br>
+ *     Reopening such a file only reads the header, however big the board is. </P>
+ * @author huynhstin
+ */
+
+public final class GameFile {
+    private static final int MAGIC = 0x4D535750; // "MSWP"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 1 + 1 + 4 * 3 + 8 + 4 * 4;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final Cell.State[] STATES = Cell.State.values();
+
+    private static final int MARKS = 1;
+    private static final int STARTED = 1 << 1;
+    private static final int LOST = 1 << 2;
+    private static final int WON = 1 << 3;
+
+    private static final short MAPPED_VERSION = 1;
+
+    /**
+     * A game read from a file, with the time that had been played.
+     */
+    public static final class Saved {
+        private final Minesweeper game;
+        private final int seconds;
+
+        private Saved(Minesweeper game, int seconds) {
+            this.game = game;
+            this.seconds = seconds;
+        }
+
+        public Minesweeper getGame() {
+            return game;
+        }
+
+        /**
+         * @return seconds on the clock when the game was saved
+         */
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    private GameFile() {
+    }
+
+    /**
+     * Write a game to a file, replacing the file if it exists.
+     * @param game game to save
+     * @param seconds seconds on the clock
+     * @param path file to write
+     * @throws IOException if the file can't be written
+     */
+    public static void save(Minesweeper game, int seconds, Path path) throws IOException {
+        Board board = game.getBoard();
+        int cells = game.getRows() * game.getCols();
+        boolean started = game.isStarted();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            int flags = (game.getMarkOption() ? MARKS : 0) | (started ? STARTED : 0)
+                    | (game.isDead() ? LOST : 0) | (game.getWon() ? WON : 0);
+            buffer.putInt(MAGIC).putShort(VERSION).put((byte) flags).put((byte) game.getSafeZone().ordinal());
+            buffer.putInt(game.getRows()).putInt(game.getCols()).putInt(game.getMines()).putLong(game.getSeed());
+            buffer.putInt(seconds).putInt(game.getLastClicked());
+            buffer.putInt(game.getStats().getClicks()).putInt(game.getStats().getCleared());
+
+            if (started) {
+                for (int index = 0; index < cells; index += 8) {
+                    int bits = 0;
+                    for (int i = 0; i < 8 && index + i < cells; i++) {
+                        bits |= (board.isMine(index + i) ? 1 : 0) << i;
+                    }
+                    put(channel, buffer, bits);
+                }
+            }
+            for (int index = 0; index < cells; index += 4) {
+                int bits = 0;
+                for (int i = 0; i < 4 && index + i < cells; i++) {
+                    bits |= board.getState(index + i).ordinal() << (2 * i);
+                }
+                put(channel, buffer, bits);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Read a game written by {@link #save(Minesweeper, int, Path)}.
+     * @param path file to read
+     * @return the game, ready to be played on, and the time on its clock
+     * @throws IOException if the file can't be read or isn't a saved game
+     */
+    public static Saved load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.limit(0);
+            fill(channel, buffer, HEADER_BYTES);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a saved Minesweeper game");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException(path + " was saved in version " + version + ", which this version can't read");
+            }
+            int flags = buffer.get();
+            int zone = buffer.get();
+            int rows = buffer.getInt();
+            int cols = buffer.getInt();
+            int mines = buffer.getInt();
+            long seed = buffer.getLong();
+            int seconds = buffer.getInt();
+            int lastClicked = buffer.getInt();
+            int clicks = buffer.getInt();
+            int cleared = buffer.getInt();
+            if (zone < 0 || zone >= MinePlacer.SafeZone.values().length) {
+                throw new IOException(path + " is corrupt: unknown safe zone " + zone);
+            }
+            // Check the size before making the board, so that a bad header can't ask for gigabytes
+            if (rows > 0 && cols > 0) {
+                long size = (long) rows * cols;
+                long expected = HEADER_BYTES + ((flags & STARTED) != 0 ? (size + 7) / 8 : 0) + (size + 3) / 4;
+                if (channel.size() != expected) {
+                    throw new IOException(path + " is corrupt: a " + rows + "x" + cols + " game takes "
+                            + expected + " bytes, but the file has " + channel.size());
+                }
+                if (size > Math.min(ByteBoard.MAX_CELLS, Runtime.getRuntime().maxMemory())) {
+                    throw new IOException(path + " has " + size + " cells, too many to load into memory");
+                }
+            }
+
+            Minesweeper game;
+            try {
+                game = new Minesweeper(rows, cols, mines, seed);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + " is corrupt: " + e.getMessage(), e);
+            }
+            game.setMarkOption((flags & MARKS) != 0);
+            game.setSafeZone(MinePlacer.SafeZone.values()[zone]);
+            Board board = game.getBoard();
+            int cells = rows * cols;
+
+            IntList mineLocations = new IntList();
+            if ((flags & STARTED) != 0) {
+                for (int index = 0; index < cells; index += 8) {
+                    fill(channel, buffer, 1);
+                    int bits = buffer.get();
+                    for (int i = 0; i < 8 && index + i < cells; i++) {
+                        if ((bits >> i & 1) != 0) {
+                            mineLocations.add(index + i);
+                        }
+                    }
+                }
+            }
+            for (int index = 0; index < cells; index += 4) {
+                fill(channel, buffer, 1);
+                int bits = buffer.get();
+                for (int i = 0; i < 4 && index + i < cells; i++) {
+                    board.setState(index + i, STATES[bits >> (2 * i) & 3]);
+                }
+            }
+
+            int[] locations = new int[mineLocations.size()];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = mineLocations.get(i);
+            }
+            game.restore(locations, (flags & STARTED) != 0, (flags & LOST) != 0, (flags & WON) != 0,
+                    lastClicked, clicks, cleared);
+            return new Saved(game, seconds);
+        }
+    }
+
+    /**
+     * Read a game from either kind of file: one written by {@link #save(Minesweeper, int, Path)}
+     *  or a mapped game, see {@link #openMapped(Path)}.
+     * @param path file to read
+     * @return the game and the time on its clock
+     * @throws IOException if the file can't be read or holds no game
+     */
+    public static Saved open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            buffer.limit(0);
+            fill(channel, buffer, 4);
+            if (buffer.getInt() != MAGIC) {
+                return openMapped(path);
+            }
+        }
+        return load(path);
+    }
+
+    /**
+     * Start a game whose board lives in a memory-mapped file, see {@link MappedBoard},
+     *  replacing the file if it exists. <br>
+     * Cells are written to the file as they change; call {@link #checkpoint(Minesweeper, int)}
+     *  to write the rest of the game, after which the file can be reopened where it left off.
+     * @param path file to keep the board in
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines number of mines, placed on the first move
+     * @param seed seed for mine placement
+     * @return the game
+     * @throws IOException if the file can't be created
+     * @throws IllegalArgumentException if the board is empty, too big or can't hold the mines
+     */
+    public static Minesweeper createMapped(Path path, int rows, int cols, int mines, long seed) throws IOException {
+        Minesweeper game = new Minesweeper(MappedBoard.create(path, rows, cols), mines, seed);
+        checkpoint(game, 0);
+        return game;
+    }
+
+    /**
+     * Reopen a game made by {@link #createMapped}, as of its last checkpoint. Only the header
+     *  is read; the cells are paged in from the file as they are used. <br>
+     * If the game wasn't checkpointed after its last moves, their cells are there but the
+     *  counters aren't, so it can't be relied on.
+     * @param path file of the game
+     * @return the game and the time on its clock
+     * @throws IOException if the file can't be opened or holds no mapped game
+     */
+    public static Saved openMapped(Path path) throws IOException {
+        MappedBoard board = MappedBoard.open(path);
+        ByteBuffer header = board.getGameHeader();
+        short version = header.getShort();
+        if (version != MAPPED_VERSION) {
+            throw new IOException(path + " was saved in version " + version + ", which this version can't read");
+        }
+        int flags = header.get();
+        int zone = header.get();
+        int mines = header.getInt();
+        int placedMines = header.getInt();
+        long seed = header.getLong();
+        int seconds = header.getInt();
+        int lastClicked = header.getInt();
+        int revealed = header.getInt();
+        int flagCount = header.getInt();
+        int correctFlags = header.getInt();
+        int clicks = header.getInt();
+        int cleared = header.getInt();
+        if (zone < 0 || zone >= MinePlacer.SafeZone.values().length) {
+            throw new IOException(path + " is corrupt: unknown safe zone " + zone);
+        }
+
+        Minesweeper game;
+        try {
+            game = new Minesweeper(board, mines, seed);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + " is corrupt: " + e.getMessage(), e);
+        }
+        game.setMarkOption((flags & MARKS) != 0);
+        game.setSafeZone(MinePlacer.SafeZone.values()[zone]);
+        game.resume((flags & STARTED) != 0, (flags & LOST) != 0, (flags & WON) != 0, lastClicked,
+                placedMines, revealed, flagCount, correctFlags, clicks, cleared);
+        return new Saved(game, seconds);
+    }
+
+    /**
+     * @return whether the game is played on a memory-mapped file, see {@link #createMapped}
+     */
+    public static boolean isMapped(Minesweeper game) {
+        return game.getBoard() instanceof MappedBoard;
+    }
+
+    /**
+     * Write everything but the cells of a mapped game to its file, then make sure the whole
+     *  file is on the disk, so that {@link #openMapped(Path)} carries on from here.
+     * @param game game made by {@link #createMapped} or {@link #openMapped}
+     * @param seconds seconds on the clock
+     * @throws IllegalArgumentException if the game isn't mapped
+     */
+    public static void checkpoint(Minesweeper game, int seconds) {
+        if (!isMapped(game)) {
+            throw new IllegalArgumentException("Only a game on a mapped board can be checkpointed");
+        }
+        MappedBoard board = (MappedBoard) game.getBoard();
+        GameStats stats = game.getStats();
+        int flags = (game.getMarkOption() ? MARKS : 0) | (game.isStarted() ? STARTED : 0)
+                | (game.isDead() ? LOST : 0) | (game.getWon() ? WON : 0);
+        ByteBuffer header = board.getGameHeader();
+        header.putShort(MAPPED_VERSION).put((byte) flags).put((byte) game.getSafeZone().ordinal());
+        header.putInt(game.getMines()).putInt(stats.getMines()).putLong(game.getSeed());
+        header.putInt(seconds).putInt(game.getLastClicked());
+        header.putInt(stats.getRevealed()).putInt(stats.getFlags()).putInt(stats.getCorrectFlags());
+        header.putInt(stats.getClicks()).putInt(stats.getCleared());
+        board.force();
+    }
+
+    /**
+     * Start a new game with the same size and mines in place, see {@link Minesweeper#reset(long)}. <br>
+     * A mapped game's file then holds the new game, and the game that was in it is gone:
+     *  the header is first rewritten for a game that hasn't started and written to the disk,
+     *  so the file never describes cells that were cleared, then the cells are cleared and
+     *  the new game is checkpointed with 0 seconds on the clock.
+     * @param game game to reset, mapped or not
+     */
+    public static void reset(Minesweeper game) {
+        long seed = ThreadLocalRandom.current().nextLong();
+        if (!isMapped(game)) {
+            game.reset(seed);
+            return;
+        }
+        MappedBoard board = (MappedBoard) game.getBoard();
+        ByteBuffer header = board.getGameHeader();
+        header.putShort(MAPPED_VERSION).put((byte) (game.getMarkOption() ? MARKS : 0))
+                .put((byte) game.getSafeZone().ordinal());
+        header.putInt(game.getMines()).putInt(0).putLong(seed);
+        header.putInt(0).putInt(-1); // seconds, last clicked
+        header.putInt(0).putInt(0).putInt(0); // revealed, flags, correct flags
+        header.putInt(0).putInt(0); // clicks, 3BV cleared
+        board.forceHeader();
+        game.reset(seed);
+        checkpoint(game, 0);
+    }
+
+    /**
+     * Add a byte to the buffer, writing the buffer out first if it is full.
+     */
+    private static void put(FileChannel channel, ByteBuffer buffer, int bits) throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        buffer.put((byte) bits);
+    }
+
+    /**
+     * Make sure the buffer has at least the given number of bytes left to read,
+     *  reading more of the file if it doesn't.
+     * @throws IOException if the file ends first
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Saved game is truncated");
+            }
+        }
+        buffer.flip();
+    }
+}
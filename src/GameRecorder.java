@@ -0,0 +1,203 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a log of the games played on a {@link Minesweeper}, see {@link Minesweeper#setRecorder},
+ *  so they can be played back exactly by the {@link Replayer}. <br>
+ * Only operations that changed something are logged, each with the time since the one before,
+ *  and the log holds the seed the mines were actually placed with, so a board found by
+ *  the {@link NoGuessGenerator} is replayed without searching for it again.
+ * <P> Layout: magic "MSWL", version (short), then one record per event, a tag byte followed by: <br>
+ *     GAME: rows, cols, mines (varints), seed (long), marks (byte) <br>
+ *     PLACED: millis, seed used (long), safe zone (byte) <br>
+ *     REVEAL, FLAG, CHORD: millis, cell index <br>
+ *     MARKS: marks (byte) <br>
+ *     END: millis, status (ordinal), clicks, cells revealed <br>
+ *     Numbers are unsigned varints: seven bits a byte, lowest first, so a click on
+ *     an Expert board takes four or five bytes. </P>
+ * <P> Writing can't throw from inside a move, so the first I/O error stops the recorder;
+ *     it is thrown again by {@link #flush()} and {@link #close()}. Not thread-safe:
+ *     use one recorder per thread. </P>
+ * @author huynhstin
+ */
+
+public final class GameRecorder implements Closeable {
+    static final int MAGIC = 0x4D53574C; // "MSWL"
+    static final short VERSION = 1;
+
+    static final int GAME = 1;
+    static final int PLACED = 2;
+    static final int REVEAL = 3;
+    static final int FLAG = 4;
+    static final int CHORD = 5;
+    static final int MARKS = 6;
+    static final int END = 7;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_RECORD_BYTES = 32;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private long last; // nanoTime of the previous event
+    private IOException error;
+
+    /**
+     * Start a new log, replacing the file if it exists.
+     * @param path file to write
+     * @throws IOException if the file can't be created
+     */
+    public GameRecorder(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putShort(VERSION);
+        last = System.nanoTime();
+    }
+
+    /**
+     * A new game starts.
+     */
+    void game(Minesweeper game) {
+        if (reserve()) {
+            buffer.put((byte) GAME);
+            putVarint(game.getRows());
+            putVarint(game.getCols());
+            putVarint(game.getMines());
+            buffer.putLong(game.getSeed());
+            buffer.put((byte) (game.getMarkOption() ? 1 : 0));
+            last = System.nanoTime();
+        }
+    }
+
+    /**
+     * The mines were placed, on the first move.
+     * @param seed seed they were placed with
+     * @param zone safe zone kept around the first click
+     */
+    void placed(long seed, MinePlacer.SafeZone zone) {
+        if (reserve()) {
+            buffer.put((byte) PLACED);
+            putMillis();
+            buffer.putLong(seed);
+            buffer.put((byte) zone.ordinal());
+        }
+    }
+
+    /**
+     * A reveal, flag or chord changed the board.
+     * @param type {@link #REVEAL}, {@link #FLAG} or {@link #CHORD}
+     * @param index cell it was made on
+     */
+    void event(int type, int index) {
+        if (reserve()) {
+            buffer.put((byte) type);
+            putMillis();
+            putVarint(index);
+        }
+    }
+
+    /**
+     * Marks were turned on or off.
+     */
+    void marks(boolean on) {
+        if (reserve()) {
+            buffer.put((byte) MARKS);
+            buffer.put((byte) (on ? 1 : 0));
+        }
+    }
+
+    /**
+     * The game was won or lost. The log is written out, so finished games survive a crash.
+     */
+    void ended(Minesweeper game) {
+        if (reserve()) {
+            buffer.put((byte) END);
+            putMillis();
+            putVarint(game.getStatus().ordinal());
+            putVarint(game.getStats().getClicks());
+            putVarint(game.getStats().getRevealed());
+            try {
+                write();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * Write out everything logged so far.
+     * @throws IOException if this or an earlier write failed
+     */
+    public void flush() throws IOException {
+        if (error == null) {
+            try {
+                write();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Write out everything logged so far and close the file.
+     * @throws IOException if this or an earlier write failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make room for one more record, writing the buffer out if it is nearly full.
+     * @return false if the recorder has failed and the record should be dropped
+     */
+    private boolean reserve() {
+        if (error != null) {
+            return false;
+        }
+        if (buffer.remaining() < MAX_RECORD_BYTES) {
+            try {
+                write();
+            } catch (IOException e) {
+                error = e;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Put the milliseconds since the previous event.
+     */
+    private void putMillis() {
+        long now = System.nanoTime();
+        putVarint((int) Math.min((now - last) / 1_000_000, Integer.MAX_VALUE));
+        last = now;
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,588 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hosts independent games for many TCP clients at once, one game per connection. <br>
+ * Usage: {@code java -cp target/classes GameServer [-p port] [-t loops]}
+ * <P> An acceptor thread hands each new connection to one of a few event loops (one per core
+ *     by default), each a non-blocking NIO selector. A connection and its game are only ever
+ *     touched by the loop that owns them, so thousands of sessions need no locks and no thread each. </P>
+ * <P> The protocol is ASCII lines, one reply line per request: <br>
+ *     {@code NEW rows cols mines [seed]} starts a game: {@code OK seed} <br>
+ *     {@code REVEAL r c}, {@code FLAG r c}, {@code CHORD r c}:
+ *     {@code OK status flags-left changes}, where the changes are {@code r,c,cell} for each
+ *     cell that changed, or {@code *} if too many did (send BOARD) <br>
+ *     {@code BOARD [r c height width]}: {@code OK rows cols}, then one line of cells per row,
+ *     of the whole board or of the given window, of at most {@link #MAX_CELLS} cells <br>
+ *     {@code SHARED rows cols mines [seed]} joins the cooperative game everyone on the server
+ *     plays together (see {@link SharedGame}), starting a new one with that size if there is
+ *     none or the last one is over: {@code OK rows cols mines seed}. Start at the middle cell.
+ *     A new shared board is built on a thread of its own, and the reply comes once it is ready.
+ *     Moves then reply {@code OK status flags-left cells}, the cells the move changed; other
+ *     players' moves are seen with BOARD. NEW goes back to a game of one's own. <br>
+ *     {@code QUIT} closes the connection <br>
+ *     A cell is {@code .} hidden, {@code F} flagged, {@code ?} marked, {@code 0-8} revealed
+ *     or {@code *} a revealed mine. Errors are {@code ERR message}. </P>
+ * <P> Requests may be pipelined, but each one is only run once the replies before it are
+ *     written, so a client that doesn't read its replies holds up its own requests instead
+ *     of piling replies up on the server. </P>
+ * @author huynhstin
+ */
+
+public final class GameServer implements Closeable {
+    private static final String USAGE = "Usage: GameServer [-p port] [-t loops]";
+    static final int DEFAULT_PORT = 4767;
+    // Games are kept in memory per connection, so each one is capped
+    private static final int MAX_CELLS = 1 << 20;
+    private static final int MAX_SHARED_CELLS = 1 << 26;
+    private static final int MAX_LINE_BYTES = 256;
+    private static final int OUT_BYTES = 1 << 12; // of the reply buffer, which grows for a big reply
+
+    private final ServerSocketChannel server;
+    private final Loop[] loops;
+    private final Thread acceptor;
+    private final AtomicLong sessions = new AtomicLong();
+    // The shared game, or the one being built; set by whoever starts a new one first
+    private final AtomicReference<CompletableFuture<SharedGame>> shared = new AtomicReference<>();
+    // Builds shared boards, which can take seconds, away from the loops
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "shared-board-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Start listening on localhost.
+     * @param port port to listen on, or 0 for any free port
+     * @param loops number of event loops
+     * @throws IOException if the port can't be bound
+     */
+    public GameServer(int port, int loops) throws IOException {
+        if (loops <= 0) {
+            throw new IllegalArgumentException("Need at least one loop");
+        }
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", port), 1024);
+        this.loops = new Loop[loops];
+        for (int i = 0; i < loops; i++) {
+            this.loops[i] = new Loop(shared, builder);
+            Thread thread = new Thread(this.loops[i], "game-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        acceptor = new Thread(this::accept, "game-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return connections accepted so far
+     */
+    public long getSessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Stop accepting and close every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (Loop loop : loops) {
+            loop.stop();
+        }
+        builder.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        int loops = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-p":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        loops = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        GameServer gameServer = new GameServer(port, loops);
+        System.out.printf("Listening on localhost:%d with %d loop%s%n", gameServer.getPort(), loops, loops == 1 ? "" : "s");
+        gameServer.acceptor.join();
+    }
+
+    /**
+     * Accept connections and deal them out to the loops in turn.
+     */
+    private void accept() {
+        int next = 0;
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                sessions.incrementAndGet();
+                loops[next].add(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * An event loop: one selector, and the sessions registered with it.
+     */
+    private static final class Loop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean stopping;
+        private final AtomicReference<CompletableFuture<SharedGame>> shared;
+        private final ExecutorService builder;
+
+        Loop(AtomicReference<CompletableFuture<SharedGame>> shared, ExecutorService builder) throws IOException {
+            selector = Selector.open();
+            this.shared = shared;
+            this.builder = builder;
+        }
+
+        /**
+         * Hand a new connection to this loop; may be called from any thread.
+         */
+        void add(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Run a task on this loop; may be called from any thread.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Close every session and the selector; may be called from any thread.
+         */
+        void stop() {
+            stopping = true;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopping) {
+                    selector.select();
+                    SocketChannel channel;
+                    while ((channel = pending.poll()) != null) {
+                        channel.register(selector, SelectionKey.OP_READ, new Session(this));
+                    }
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        try {
+                            ((Session) key.attachment()).handle(key);
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Event loop failed: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    close(key);
+                }
+                SocketChannel channel;
+                while ((channel = pending.poll()) != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // already closing
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // nothing left to do with it
+                }
+            }
+        }
+
+        private static void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // already closing
+            }
+        }
+    }
+
+    /**
+     * One connection and its game. Only used by the loop that owns the connection,
+     *  except for the shared game, which is thread-safe.
+     */
+    private static final class Session {
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE_BYTES);
+        private ByteBuffer out = ByteBuffer.allocate(OUT_BYTES);
+        private final StringBuilder reply = new StringBuilder();
+        private Minesweeper game;
+        private SharedGame sharedGame; // instead of game, after SHARED
+        private CompletableFuture<SharedGame> joining; // the shared game being waited for, if any
+        private final Loop loop;
+        private boolean quit;
+
+        Session(Loop loop) {
+            this.loop = loop;
+        }
+
+        void handle(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (key.isReadable() && channel.read(in) < 0) {
+                throw new IOException("Closed by the client");
+            }
+            serve(key);
+        }
+
+        /**
+         * Reply to SHARED once the shared game is ready, and go on with the requests after it.
+         *  Runs on the loop.
+         * @param failure what building the game threw, or null
+         */
+        private void joined(SelectionKey key, SharedGame current, Throwable failure) {
+            joining = null;
+            if (!key.isValid()) {
+                return; // closed meanwhile
+            }
+            if (failure != null) {
+                respond("ERR " + failure.getMessage());
+            } else {
+                sharedGame = current;
+                game = null;
+                respond("OK " + current.getRows() + " " + current.getCols() + " " + current.getMines()
+                        + " " + current.getSeed());
+            }
+            try {
+                serve(key);
+            } catch (IOException e) {
+                Loop.close(key);
+            }
+        }
+
+        /**
+         * Write the replies queued, then run the requests read one by one, each only once the
+         *  replies before it are all written. Whatever can't be run yet stays in the input buffer.
+         */
+        private void serve(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            while (true) {
+                if (out.position() > 0) {
+                    out.flip();
+                    channel.write(out);
+                    out.compact();
+                    if (out.position() > 0) {
+                        // Don't run or read more requests until the client takes its replies
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    if (out.capacity() > OUT_BYTES) {
+                        out = ByteBuffer.allocate(OUT_BYTES); // let go of a big reply's buffer
+                    }
+                }
+                if (quit) {
+                    throw new IOException("Quit");
+                }
+                if (joining != null) {
+                    // The next requests wait for the shared game, see joined
+                    key.interestOps(0);
+                    return;
+                }
+                int end = -1;
+                for (int i = 0; i < in.position(); i++) {
+                    if (in.get(i) == '\n') {
+                        end = i;
+                        break;
+                    }
+                }
+                if (end >= 0) {
+                    String line = new String(in.array(), 0, end, StandardCharsets.US_ASCII).trim();
+                    in.flip();
+                    in.position(end + 1);
+                    in.compact();
+                    execute(key, line);
+                } else if (!in.hasRemaining()) {
+                    respond("ERR line too long");
+                    quit = true;
+                } else {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        private void execute(SelectionKey key, String line) {
+            if (quit) {
+                return;
+            }
+            String[] words = line.split(" +");
+            try {
+                switch (words[0].toUpperCase()) {
+                    case "NEW":
+                        newGame(words);
+                        break;
+                    case "REVEAL":
+                    case "FLAG":
+                    case "CHORD":
+                        move(words);
+                        break;
+                    case "BOARD":
+                        board(words);
+                        break;
+                    case "SHARED":
+                        joinShared(key, words);
+                        break;
+                    case "QUIT":
+                        quit = true;
+                        break;
+                    default:
+                        respond("ERR unknown command " + words[0]);
+                }
+            } catch (NumberFormatException e) {
+                respond("ERR not a number: " + e.getMessage());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | IllegalStateException e) {
+                respond("ERR " + e.getMessage());
+            }
+        }
+
+        private void newGame(String[] words) {
+            if (words.length != 4 && words.length != 5) {
+                throw new IllegalArgumentException("usage: NEW rows cols mines [seed]");
+            }
+            int rows = Integer.parseInt(words[1]);
+            int cols = Integer.parseInt(words[2]);
+            if ((long) rows * cols > MAX_CELLS) {
+                throw new IllegalArgumentException("boards are limited to " + MAX_CELLS + " cells");
+            }
+            long seed = words.length == 5 ? Long.parseLong(words[4]) : ThreadLocalRandom.current().nextLong();
+            game = new Minesweeper(rows, cols, Integer.parseInt(words[3]), seed);
+            sharedGame = null;
+            respond("OK " + seed);
+        }
+
+        private void joinShared(SelectionKey key, String[] words) {
+            if (words.length != 4 && words.length != 5) {
+                throw new IllegalArgumentException("usage: SHARED rows cols mines [seed]");
+            }
+            int rows = Integer.parseInt(words[1]);
+            int cols = Integer.parseInt(words[2]);
+            int mines = Integer.parseInt(words[3]);
+            if ((long) rows * cols > MAX_SHARED_CELLS) {
+                throw new IllegalArgumentException("shared boards are limited to " + MAX_SHARED_CELLS + " cells");
+            }
+            long seed = words.length == 5 ? Long.parseLong(words[4]) : ThreadLocalRandom.current().nextLong();
+            CompletableFuture<SharedGame> current = loop.shared.get();
+            while (current == null || isOver(current)) {
+                CompletableFuture<SharedGame> fresh = new CompletableFuture<>();
+                if (loop.shared.compareAndSet(current, fresh)) {
+                    // Only the session that starts the game builds it, off the loop
+                    try {
+                        loop.builder.execute(() -> {
+                            try {
+                                fresh.complete(new SharedGame(rows, cols, mines, rows / 2, cols / 2, seed));
+                            } catch (RuntimeException e) {
+                                fresh.completeExceptionally(e);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        fresh.completeExceptionally(new IllegalStateException("the server is closing"));
+                    }
+                    current = fresh;
+                } else {
+                    current = loop.shared.get(); // someone else started one first
+                }
+            }
+            joining = current;
+            current.whenComplete((ready, failure) -> loop.execute(() -> joined(key, ready, failure)));
+        }
+
+        /**
+         * @return whether a new shared game should be started instead: the game is over,
+         *          or building it failed. One still being built isn't over
+         */
+        private static boolean isOver(CompletableFuture<SharedGame> game) {
+            return game.isDone() && (game.isCompletedExceptionally()
+                    || game.join().getStatus() != Minesweeper.Status.PLAYING);
+        }
+
+        private void move(String[] words) {
+            if (words.length != 3) {
+                throw new IllegalArgumentException("usage: " + words[0] + " r c");
+            }
+            int r = Integer.parseInt(words[1]);
+            int c = Integer.parseInt(words[2]);
+            if (sharedGame != null) {
+                moveShared(words[0], r, c);
+                return;
+            }
+            if (game == null) {
+                throw new IllegalStateException("no game, send NEW first");
+            }
+            if (r < 0 || r >= game.getRows() || c < 0 || c >= game.getCols()) {
+                throw new IndexOutOfBoundsException("(" + r + ", " + c + ") is off the board");
+            }
+            switch (words[0].toUpperCase()) {
+                case "REVEAL":
+                    game.reveal(r, c);
+                    break;
+                case "FLAG":
+                    game.flag(r, c);
+                    break;
+                default:
+                    game.chord(r, c);
+            }
+
+            reply.setLength(0);
+            reply.append("OK ").append(game.getStatus()).append(' ').append(game.getFlagsLeft());
+            DirtyRegion changed = game.getToPaint();
+            if (changed.isOverflowed()) {
+                reply.append(" *");
+            } else {
+                Board board = game.getBoard();
+                IntList indices = changed.getIndices();
+                for (int i = 0; i < indices.size(); i++) {
+                    int index = indices.get(i);
+                    reply.append(' ').append(board.row(index)).append(',').append(board.col(index))
+                            .append(',').append(symbol(board, index));
+                }
+            }
+            changed.clear();
+            respond(reply);
+        }
+
+        private void moveShared(String command, int r, int c) {
+            int changed;
+            switch (command.toUpperCase()) {
+                case "REVEAL":
+                    changed = sharedGame.reveal(r, c);
+                    break;
+                case "FLAG":
+                    changed = sharedGame.flag(r, c) ? 1 : 0;
+                    break;
+                default:
+                    changed = sharedGame.chord(r, c);
+            }
+            respond("OK " + sharedGame.getStatus() + " " + sharedGame.getFlagsLeft() + " " + changed);
+        }
+
+        private void board(String[] words) {
+            if (game == null && sharedGame == null) {
+                throw new IllegalStateException("no game, send NEW first");
+            }
+            Board board = sharedGame != null ? sharedGame.getBoard() : game.getBoard();
+            int top = 0;
+            int left = 0;
+            int height = board.getRows();
+            int width = board.getCols();
+            if (words.length == 5) {
+                top = Math.max(Integer.parseInt(words[1]), 0);
+                left = Math.max(Integer.parseInt(words[2]), 0);
+                height = Math.min(Integer.parseInt(words[3]), board.getRows() - top);
+                width = Math.min(Integer.parseInt(words[4]), board.getCols() - left);
+            } else if (words.length != 1) {
+                throw new IllegalArgumentException("usage: BOARD [r c height width]");
+            }
+            if ((long) height * width > MAX_CELLS) {
+                throw new IllegalArgumentException("BOARD is limited to " + MAX_CELLS
+                        + " cells, ask for a window with BOARD r c height width");
+            }
+            respond("OK " + Math.max(height, 0) + " " + Math.max(width, 0));
+            for (int r = top; r < top + height; r++) {
+                reply.setLength(0);
+                for (int c = left; c < left + width; c++) {
+                    reply.append(symbol(board, board.index(r, c)));
+                }
+                respond(reply);
+            }
+            if (game != null) {
+                game.getToPaint().clear();
+            }
+        }
+
+        private static char symbol(Board board, int index) {
+            switch (board.getState(index)) {
+                case FLAGGED:
+                    return 'F';
+                case MARKED:
+                    return '?';
+                case REVEALED:
+                    return board.isMine(index) ? '*' : (char) ('0' + board.getValue(index));
+                default:
+                    return '.';
+            }
+        }
+
+        /**
+         * Queue a reply line, growing the output buffer if it doesn't fit.
+         */
+        private void respond(CharSequence line) {
+            int bytes = line.length() + 1;
+            if (out.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            for (int i = 0; i < line.length(); i++) {
+                out.put((byte) line.charAt(i));
+            }
+            out.put((byte) '\n');
+        }
+    }
+}
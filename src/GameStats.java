@@ -0,0 +1,201 @@
+/**
+ * Counters for one game, kept up to date by {@link Minesweeper} as each move is made,
+ *  so reading any of them is constant time however big the board is.
+ * <P> 3BV is the fewest clicks that clear the board without flags: one per opening
+ *     (connected region of empty cells plus its border) and one per number that doesn't
+ *     touch an opening. The board is measured by a {@link BoardAnalyzer} the first time
+ *     one of its metrics is asked for, a single pass; each click that opens a new opening
+ *     or reveals such a number is counted as it happens and taken off the 3BV. A flag on
+ *     an empty cell stops the cascade, so an opening can be opened in two halves; the
+ *     3BV left never goes below 0. Boards of more than {@link Minesweeper#LARGE_BOARD_CELLS}
+ *     cells aren't analyzed, and their metrics stay 0. </P>
+ * @author huynhstin
+ */
+
+public final class GameStats {
+    private final int cells;
+    private int mines;
+    private int revealed;
+    private int flags;
+    private int correctFlags;
+    private int cleared; // clicks that took one off the 3BV
+    private int clicks;
+
+    /* The board is only analyzed when one of its metrics is asked for, so games
+     that never look at them don't pay for the pass over the board. The analyzer
+     is kept so that analyzing a reset game allocates nothing. */
+    private Board board; // null until the mines are placed
+    private boolean analyzed;
+    private final BoardAnalyzer analyzer = new BoardAnalyzer();
+
+    GameStats(int cells, int mines) {
+        this.cells = cells;
+        reset(mines);
+    }
+
+    /**
+     * Back to the counters of a game that has not started.
+     * @param mines mines the game will have
+     */
+    void reset(int mines) {
+        this.mines = mines;
+        revealed = 0;
+        flags = 0;
+        correctFlags = 0;
+        cleared = 0;
+        board = null;
+        analyzed = false;
+        clicks = 0;
+    }
+
+    /**
+     * The mines were placed.
+     * @param board the board, with its mines and numbers
+     * @param mines how many were placed
+     * @param correctFlags how many of the flags placed before the first move landed on mines
+     */
+    void placed(Board board, int mines, int correctFlags) {
+        this.mines = mines;
+        this.correctFlags = correctFlags;
+        this.board = board;
+    }
+
+    void revealed() {
+        revealed++;
+    }
+
+    /**
+     * Many cells were revealed at once, see {@link TiledFloodFill}.
+     */
+    void revealed(int count) {
+        revealed += count;
+    }
+
+    /**
+     * A click opened an opening or revealed a number that is not next to one.
+     */
+    void cleared() {
+        cleared++;
+    }
+
+    void flagged(boolean mine) {
+        flags++;
+        correctFlags += mine ? 1 : 0;
+    }
+
+    void unflagged(boolean mine) {
+        flags--;
+        correctFlags -= mine ? 1 : 0;
+    }
+
+    void clicked() {
+        clicks++;
+    }
+
+    /**
+     * Put back the counters of a saved game, after {@link #placed(Board, int, int)} if it had started.
+     */
+    void restored(int revealed, int flags, int correctFlags, int clicks, int cleared) {
+        this.revealed = revealed;
+        this.flags = flags;
+        this.correctFlags = correctFlags;
+        this.clicks = clicks;
+        this.cleared = cleared;
+    }
+
+    /**
+     * @return clicks that took one off the 3BV so far
+     */
+    int getCleared() {
+        return cleared;
+    }
+
+    /**
+     * @return number of mines on the board (or to be placed, before the first move)
+     */
+    public int getMines() {
+        return mines;
+    }
+
+    public int getRevealed() {
+        return revealed;
+    }
+
+    /**
+     * @return flags currently on the board
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return flags currently on the board that are on mines
+     */
+    public int getCorrectFlags() {
+        return correctFlags;
+    }
+
+    /**
+     * @return cells that are not mines and are not revealed yet; 0 means the game is won
+     */
+    public int getSafeLeft() {
+        return cells - mines - revealed;
+    }
+
+    /**
+     * @return 3BV of the board, or 0 before the first move or if the board is too large to analyze
+     */
+    public int getBbbv() {
+        return analysis() != null ? analyzer.getBbbv() : 0;
+    }
+
+    /**
+     * @return openings on the board, see {@link BoardAnalyzer}
+     */
+    public int getOpenings() {
+        return analysis() != null ? analyzer.getOpenings() : 0;
+    }
+
+    /**
+     * @return numbers with no empty neighbour on the board, see {@link BoardAnalyzer}
+     */
+    public int getIsolatedNumbers() {
+        return analysis() != null ? analyzer.getIsolatedNumbers() : 0;
+    }
+
+    /**
+     * @return 3BV still to be cleared
+     */
+    public int getBbbvLeft() {
+        return Math.max(getBbbv() - cleared, 0);
+    }
+
+    /**
+     * @return reveals, chords and flag changes that did something
+     */
+    public int getClicks() {
+        return clicks;
+    }
+
+    /**
+     * @return 3BV cleared per click, the usual measure of how efficiently a board was played
+     */
+    public double getEfficiency() {
+        return clicks == 0 ? 0 : (double) (getBbbv() - getBbbvLeft()) / clicks;
+    }
+
+    /**
+     * @return the analysis of the board, running it the first time; null before the mines are
+     *          placed or if the board is too large
+     */
+    private BoardAnalyzer analysis() {
+        if (board == null || cells > Minesweeper.LARGE_BOARD_CELLS) {
+            return null;
+        }
+        if (!analyzed) {
+            analyzer.analyze(board);
+            analyzed = true;
+        }
+        return analyzer;
+    }
+}
@@ -0,0 +1,574 @@
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs the UI's {@link Minesweeper} on a thread of its own, so that a move revealing millions
+ *  of cells or a slow hint never holds up the event dispatch thread, its input or its timers. <br>
+ * The game thread is the only one that touches the game and its {@link Solver} and
+ *  {@link MineProbability}. The event thread sends it commands through a queue, and after each
+ *  move the game thread publishes what changed as a {@link Changes} batch, handed to the view
+ *  on the event thread with SwingUtilities.invokeLater. A batch only carries the cells of the
+ *  window, the part of the board the view asked for, so neither side ever holds a copy of the
+ *  whole board and a mapped board is only read where it is looked at.
+ * <P> Every game started through here gets a number. Moves carry the number of the game they were
+ *     made on and batches the number of the game they come from, so a click made just before
+ *     a reset doesn't land on the new game, and a batch from the old game is never shown
+ *     over the new one. </P>
+ * <P> Except for those of {@link Changes}, the methods must be called on the event thread. </P>
+ * @author huynhstin
+ */
+
+final class GameThread {
+    static final int DEFAULT_WINDOW = 256; // rows and cols of the window until the view asks for one
+
+    private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<>();
+    private final Consumer<Changes> view;
+    private final Consumer<Throwable> failure;
+
+    /* Only touched on the game thread. */
+    private Minesweeper game;
+    private Solver solver; // created the first time a hint or the probabilities are asked for in a game
+    private MineProbability probability; // only while the probabilities are shown
+    private boolean showProbabilities = false;
+    private boolean changed = false; // whether the game changed since the probabilities were worked out
+    private int current = 0; // number of the game being played
+    // Part of the board the view shows, as asked for; fitted to the board when a batch is taken
+    private int windowTop = 0;
+    private int windowLeft = 0;
+    private int windowBottom = DEFAULT_WINDOW - 1;
+    private int windowRight = DEFAULT_WINDOW - 1;
+
+    /* Only touched on the event thread. */
+    private int requested = 0; // number of the last game asked for
+
+    /**
+     * What one command changed, ready to show. Made on the game thread; nothing in it,
+     *  arrays included, is written after it is published. <br>
+     * Only the cells inside the window the view asked for are carried, see {@link #setWindow},
+     *  so a batch is as big as the part of the board on screen, however big the board is.
+     */
+    static final class Changes {
+        private static final int[] NO_CELLS = {};
+        private static final byte[] NO_SPRITES = {};
+
+        private final int rows;
+        private final int cols;
+        private final int mines;
+        private final boolean fresh;
+        private final int windowTop;
+        private final int windowLeft;
+        private final int windowBottom;
+        private final int windowRight;
+        private final int top;
+        private final int left;
+        private final int bottom;
+        private final int right;
+        private final int[] cells;
+        private final byte[] sprites;
+        private final byte[] tint;
+        private final Minesweeper.Status status;
+        private final boolean started;
+        private final int flagsLeft;
+        private final int bbbv;
+        private final int bbbvLeft;
+        private final int openings;
+        private final int isolatedNumbers;
+
+        /**
+         * Take the game's changed cells inside the window, clearing its toPaint region.
+         * @param fresh whether this is a new game
+         * @param whole whether to take every cell of the window, for a new game or a new window
+         * @param window top, left, bottom and right of the window, on the board
+         * @param tint probability tint of every cell of the window, or null
+         */
+        private Changes(Minesweeper game, boolean fresh, boolean whole, int[] window, byte[] tint) {
+            Board board = game.getBoard();
+            DirtyRegion toPaint = game.getToPaint();
+            rows = game.getRows();
+            cols = game.getCols();
+            mines = game.getMines();
+            this.fresh = fresh;
+            windowTop = window[0];
+            windowLeft = window[1];
+            windowBottom = window[2];
+            windowRight = window[3];
+            if (whole) {
+                top = windowTop;
+                left = windowLeft;
+                bottom = windowBottom;
+                right = windowRight;
+            } else {
+                // Empty if nothing changed: the region's max is then below its min
+                top = Math.max(toPaint.getMinRow(), windowTop);
+                left = Math.max(toPaint.getMinCol(), windowLeft);
+                bottom = Math.min(toPaint.getMaxRow(), windowBottom);
+                right = Math.min(toPaint.getMaxCol(), windowRight);
+            }
+            if (isEmpty()) {
+                cells = NO_CELLS;
+                sprites = NO_SPRITES;
+            } else if (whole || toPaint.isOverflowed()) {
+                cells = null;
+                sprites = new byte[(bottom - top + 1) * (right - left + 1)];
+                int i = 0;
+                for (int r = top; r <= bottom; r++) {
+                    for (int c = left; c <= right; c++) {
+                        sprites[i++] = sprite(game, board, board.index(r, c));
+                    }
+                }
+            } else {
+                IntList changed = toPaint.getIndices();
+                int[] inside = new int[changed.size()];
+                int count = 0;
+                for (int i = 0; i < changed.size(); i++) {
+                    int index = changed.get(i);
+                    int r = board.row(index);
+                    int c = board.col(index);
+                    if (r >= top && r <= bottom && c >= left && c <= right) {
+                        inside[count++] = index;
+                    }
+                }
+                cells = count == inside.length ? inside : Arrays.copyOf(inside, count);
+                sprites = new byte[count];
+                for (int i = 0; i < count; i++) {
+                    sprites[i] = sprite(game, board, cells[i]);
+                }
+            }
+            toPaint.clear();
+            this.tint = tint;
+
+            GameStats stats = game.getStats();
+            status = game.getStatus();
+            started = game.isStarted();
+            flagsLeft = game.getFlagsLeft();
+            bbbv = stats.getBbbv();
+            bbbvLeft = stats.getBbbvLeft();
+            openings = stats.getOpenings();
+            isolatedNumbers = stats.getIsolatedNumbers();
+        }
+
+        /**
+         * @return index of the tile sprite showing the cell, see {@link SpriteLoader#getTileSprite(int)},
+         *          with the mines and wrong flags of a lost game already worked in
+         */
+        private static byte sprite(Minesweeper game, Board board, int index) {
+            switch (board.getState(index)) {
+                case REVEALED:
+                    if (board.isMine(index)) {
+                        // if last clicked, red bg; else normal bg
+                        return (byte) (index == game.getLastClicked() ? 6 : 5);
+                    }
+                    int value = board.getValue(index);
+                    return (byte) (value == 0 ? 1 : 7 + value);
+                case FLAGGED:
+                    // On death, a flag that wasn't on a mine shows a red X mine
+                    return (byte) (game.isDead() && !board.isMine(index) ? 7 : 2);
+                case MARKED:
+                    return 3;
+                default:
+                    return 0;
+            }
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        int getCols() {
+            return cols;
+        }
+
+        int getMines() {
+            return mines;
+        }
+
+        /**
+         * @return whether this is the first batch of a new (or reset, or loaded) game, so the
+         *          sprites cover the whole window
+         */
+        boolean isFresh() {
+            return fresh;
+        }
+
+        /**
+         * @return first row of the window the batch was taken for. The first batch of a game
+         *          or of a window covers all of it; the ones after only what changed inside it
+         */
+        int getWindowTop() {
+            return windowTop;
+        }
+
+        int getWindowLeft() {
+            return windowLeft;
+        }
+
+        int getWindowBottom() {
+            return windowBottom;
+        }
+
+        int getWindowRight() {
+            return windowRight;
+        }
+
+        /**
+         * @return whether no cell changed inside the window
+         */
+        boolean isEmpty() {
+            return top > bottom || left > right;
+        }
+
+        int getTop() {
+            return top;
+        }
+
+        int getLeft() {
+            return left;
+        }
+
+        int getBottom() {
+            return bottom;
+        }
+
+        int getRight() {
+            return right;
+        }
+
+        /**
+         * @return indices of the changed cells, or null if too many changed to list them, in which
+         *          case the sprites cover the whole rectangle from top left to bottom right
+         */
+        int[] getCells() {
+            return cells;
+        }
+
+        /**
+         * @return sprite of each listed cell, or of each cell of the rectangle row by row;
+         *          not to be written to
+         */
+        byte[] getSprites() {
+            return sprites;
+        }
+
+        /**
+         * @return how red to tint each cell of the window row by row, from 0 to 160, by how likely
+         *          it is to be a mine; null if the probabilities aren't shown. Not to be written to
+         */
+        byte[] getTint() {
+            return tint;
+        }
+
+        Minesweeper.Status getStatus() {
+            return status;
+        }
+
+        boolean isStarted() {
+            return started;
+        }
+
+        int getFlagsLeft() {
+            return flagsLeft;
+        }
+
+        int getBbbv() {
+            return bbbv;
+        }
+
+        int getBbbvLeft() {
+            return bbbvLeft;
+        }
+
+        int getOpenings() {
+            return openings;
+        }
+
+        int getIsolatedNumbers() {
+            return isolatedNumbers;
+        }
+    }
+
+    /**
+     * Start the game thread; the view is given a fresh batch of the game first.
+     * @param game game to play; not to be touched by the caller any more
+     * @param view given each batch on the event thread
+     * @param failure given what a command threw, on the event thread, before the view is sent
+     *                 the whole window again to get it back in step with the game
+     */
+    GameThread(Minesweeper game, Consumer<Changes> view, Consumer<Throwable> failure) {
+        this.game = game;
+        this.view = view;
+        this.failure = failure;
+        commands.add(() -> publish(true, true));
+        Thread thread = new Thread(this::run, "Minesweeper game");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            Runnable command;
+            try {
+                command = commands.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                command.run();
+            } catch (Throwable e) {
+                // Errors too, e.g. running out of memory: the thread must live on, or the UI freezes
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Report a command that failed, and publish the whole window, since the command may have
+     *  changed the game without publishing it. The solver and probabilities are dropped,
+     *  as they may be half updated, and made again when next asked for.
+     */
+    private void fail(Throwable e) {
+        solver = null;
+        probability = null;
+        SwingUtilities.invokeLater(() -> failure.accept(e));
+        try {
+            publish(false, true);
+        } catch (Throwable again) {
+            e.addSuppressed(again);
+        }
+    }
+
+    /**
+     * @return whether hints and probabilities are given on a board of this size. The
+     *          {@link Solver} keeps a few bytes for every cell of the board, so boards of more
+     *          than {@link Minesweeper#LARGE_BOARD_CELLS} cells, mapped ones among them, go without
+     */
+    static boolean canSolve(int rows, int cols) {
+        return (long) rows * cols <= Minesweeper.LARGE_BOARD_CELLS;
+    }
+
+    /**
+     * Reveal a cell, and check whether that won the game.
+     */
+    void reveal(int r, int c) {
+        move(game -> game.reveal(r, c));
+    }
+
+    void chord(int r, int c) {
+        move(game -> game.chord(r, c));
+    }
+
+    void flag(int r, int c) {
+        move(game -> game.flag(r, c));
+    }
+
+    /**
+     * Queue a move on the current game, to be published once it is made.
+     */
+    private void move(Consumer<Minesweeper> move) {
+        int number = requested;
+        commands.add(() -> {
+            if (number == current) {
+                move.accept(game);
+                changed = true;
+                publish(false, false);
+            }
+        });
+    }
+
+    /**
+     * Start a new game of the same size, see {@link GameFile#reset(Minesweeper)}: a mapped
+     *  game is replaced by the new one in its file.
+     */
+    void reset() {
+        int number = ++requested;
+        commands.add(() -> {
+            GameFile.reset(game);
+            start(number);
+        });
+    }
+
+    /**
+     * Play another game from now on, e.g. one of another size or one loaded from a file.
+     * @param game game to play; not to be touched by the caller any more
+     */
+    void replace(Minesweeper game) {
+        int number = ++requested;
+        commands.add(() -> {
+            this.game = game;
+            start(number);
+        });
+    }
+
+    private void start(int number) {
+        solver = null;
+        probability = null;
+        current = number;
+        publish(true, true);
+    }
+
+    /**
+     * Change a setting of the game, in order with the commands before it: a change queued
+     *  after a reset applies to the new game.
+     */
+    void update(Consumer<Minesweeper> change) {
+        commands.add(() -> {
+            change.accept(game);
+            changed = true;
+        });
+    }
+
+    /**
+     * Turn the mine probabilities on or off. While they are on, they are worked out again
+     *  after each move and published as the {@link Changes#getTint() tint}; a batch that
+     *  only follows another window reuses them.
+     */
+    void setProbabilities(boolean shown) {
+        commands.add(() -> {
+            showProbabilities = shown;
+            probability = null;
+            publish(false, false);
+        });
+    }
+
+    /**
+     * Follow another part of the board: from now on batches only carry the cells inside the
+     *  given rectangle, starting with one that carries all of them. A window that doesn't fit
+     *  the board is moved and cut down to fit it, also when another game is started.
+     * @param top first row
+     * @param left first col
+     * @param bottom last row
+     * @param right last col
+     */
+    void setWindow(int top, int left, int bottom, int right) {
+        commands.add(() -> {
+            windowTop = top;
+            windowLeft = left;
+            windowBottom = bottom;
+            windowRight = right;
+            publish(false, true);
+        });
+    }
+
+    /**
+     * Find a cell the solver can prove is safe, if the game is still being played.
+     * @param hint given the index of the cell, or -1 if there is none, on the event thread
+     */
+    void hint(IntConsumer hint) {
+        int number = requested;
+        commands.add(() -> {
+            if (number != current || game.getStatus() != Minesweeper.Status.PLAYING
+                    || !canSolve(game.getRows(), game.getCols())) {
+                return;
+            }
+            getSolver().solve();
+            int safe = solver.nextSafe();
+            SwingUtilities.invokeLater(() -> {
+                if (number == requested) {
+                    hint.accept(safe);
+                }
+            });
+        });
+    }
+
+    /**
+     * Look at the game on the game thread, and get the answer back on the event thread.
+     * @param question run on the game thread
+     * @param answer given what the question returned, on the event thread
+     */
+    <T> void query(Function<Minesweeper, T> question, Consumer<T> answer) {
+        commands.add(() -> {
+            T result = question.apply(game);
+            SwingUtilities.invokeLater(() -> answer.accept(result));
+        });
+    }
+
+    /**
+     * Like {@link #query}, but waiting for the answer, after every command queued before it.
+     *  Only for what has to be done before going on, like closing the game log on exit.
+     * @param question run on the game thread
+     * @return what it returned
+     */
+    <T> T call(Function<Minesweeper, T> question) {
+        FutureTask<T> task = new FutureTask<>(() -> question.apply(game));
+        commands.add(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the game thread", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Publish what changed inside the window since the last batch, unless a newer game
+     *  was asked for meanwhile.
+     * @param fresh whether this is a new game
+     * @param whole whether to publish every cell of the window
+     */
+    private void publish(boolean fresh, boolean whole) {
+        int[] window = window();
+        Changes changes = new Changes(game, fresh, whole, window, tint(window));
+        int number = current;
+        SwingUtilities.invokeLater(() -> {
+            if (number == requested) {
+                view.accept(changes);
+            }
+        });
+    }
+
+    /**
+     * @return top, left, bottom and right of the window, fitted to the board
+     */
+    private int[] window() {
+        int height = Math.min(windowBottom - windowTop + 1, game.getRows());
+        int width = Math.min(windowRight - windowLeft + 1, game.getCols());
+        int top = Math.max(0, Math.min(windowTop, game.getRows() - height));
+        int left = Math.max(0, Math.min(windowLeft, game.getCols() - width));
+        return new int[] {top, left, top + height - 1, left + width - 1};
+    }
+
+    /**
+     * @return the probability tint of every cell of the window, or null if it isn't shown
+     */
+    private byte[] tint(int[] window) {
+        if (!showProbabilities || game.getStatus() != Minesweeper.Status.PLAYING
+                || !canSolve(game.getRows(), game.getCols())) {
+            return null;
+        }
+        if (probability == null) {
+            probability = new MineProbability(game, getSolver());
+            changed = true;
+        }
+        if (changed) {
+            probability.compute();
+            changed = false;
+        }
+        byte[] tint = new byte[(window[2] - window[0] + 1) * (window[3] - window[1] + 1)];
+        int i = 0;
+        for (int r = window[0]; r <= window[2]; r++) {
+            for (int c = window[1]; c <= window[3]; c++) {
+                tint[i++] = (byte) Math.round(probability.get(r, c) * 160);
+            }
+        }
+        return tint;
+    }
+
+    private Solver getSolver() {
+        if (solver == null) {
+            solver = new Solver(game);
+        }
+        return solver;
+    }
+}
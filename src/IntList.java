@@ -0,0 +1,63 @@
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, used as a reusable work buffer so
+ *  hot paths don't have to box or allocate an array per element. <br>
+ * Can be used as a stack via {@link #add(int)} and {@link #pop()}.
+ * @author huynhstin
+ */
+
+final class IntList {
+    private static final int DEFAULT_CAPACITY = 64;
+    private int[] data;
+    private int size = 0;
+
+    IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntList(int capacity) {
+        data = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * Remove and return the last element. Does not check for emptiness.
+     * @return last element
+     */
+    int pop() {
+        return data[--size];
+    }
+
+    int get(int index) {
+        return data[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of the elements, in order
+     */
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empty the list, keeping its backing array so it can be refilled without allocating.
+     */
+    void clear() {
+        size = 0;
+    }
+}
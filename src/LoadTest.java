@@ -0,0 +1,188 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test for the {@link GameServer}: opens many connections, plays random games on all of them
+ *  at once and reports the latency of the moves. <br>
+ * Usage: {@code java -cp target/classes LoadTest [options]}
+ * <P> -host host and -p port of the server (default localhost and {@link GameServer#DEFAULT_PORT}) <br>
+ *     -local start a server in this process instead, on a free port <br>
+ *     -c connections, all kept open for the whole test (default 1000) <br>
+ *     -n moves per connection (default 200) <br>
+ *     -t client threads, each taking its connections in turn (default one per core) <br>
+ *     -b rows x cols x mines of the games (default 16x30x99) </P>
+ * <P> Each move is one request and its reply; when a game ends, the connection starts a new one. </P>
+ * @author huynhstin
+ */
+
+public final class LoadTest {
+    private static final String USAGE = "Usage: LoadTest [-host host] [-p port] [-local] [-c connections]"
+            + " [-n moves] [-t threads] [-b RxCxM]";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        String host = "localhost";
+        int port = GameServer.DEFAULT_PORT;
+        boolean local = false;
+        int connections = 1000;
+        int moves = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int[] size = {16, 30, 99};
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-host":
+                        host = args[++i];
+                        break;
+                    case "-p":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "-local":
+                        local = true;
+                        break;
+                    case "-c":
+                        connections = Integer.parseInt(args[++i]);
+                        break;
+                    case "-n":
+                        moves = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-b":
+                        String[] parts = args[++i].split("x");
+                        if (parts.length != 3) {
+                            throw new IllegalArgumentException("Board must be rows x cols x mines: " + args[i]);
+                        }
+                        size = new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (connections <= 0 || moves <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("Connections, moves and threads must be positive");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        GameServer server = local ? new GameServer(0, Runtime.getRuntime().availableProcessors()) : null;
+        if (server != null) {
+            port = server.getPort();
+        }
+        threads = Math.min(threads, connections);
+        System.out.printf("%d connections to %s:%d, %d moves each on %dx%d/%d boards, %d client thread%s%n",
+                connections, host, port, moves, size[0], size[1], size[2], threads, threads == 1 ? "" : "s");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        SplittableRandom root = new SplittableRandom(42);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int share = connections / threads + (t < connections % threads ? 1 : 0);
+            SplittableRandom random = root.split();
+            String withHost = host;
+            int withPort = port;
+            int[] withSize = size;
+            int withMoves = moves;
+            results.add(pool.submit(() -> run(withHost, withPort, share, withMoves, withSize, random)));
+        }
+        long[][] latencies = new long[threads][];
+        for (int t = 0; t < threads; t++) {
+            latencies[t] = results.get(t).get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        if (server != null) {
+            server.close();
+        }
+
+        long[] all = new long[(int) Arrays.stream(latencies).mapToLong(l -> l.length).sum()];
+        int at = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, at, l.length);
+            at += l.length;
+        }
+        Arrays.sort(all);
+        System.out.printf("%d moves in %.2f s: %.0f moves/s%n", all.length, seconds, all.length / seconds);
+        System.out.printf("latency p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, percentile(all, 0.999) / 1e3,
+                all[all.length - 1] / 1e3);
+    }
+
+    /**
+     * Open one thread's connections and play on them in turn.
+     * @return the latency of every move, in nanoseconds
+     */
+    private static long[] run(String host, int port, int connections, int moves, int[] size,
+                              SplittableRandom random) throws IOException {
+        Socket[] sockets = new Socket[connections];
+        BufferedReader[] readers = new BufferedReader[connections];
+        OutputStream[] writers = new OutputStream[connections];
+        try {
+            for (int i = 0; i < connections; i++) {
+                sockets[i] = new Socket(host, port);
+                sockets[i].setTcpNoDelay(true);
+                readers[i] = new BufferedReader(new InputStreamReader(sockets[i].getInputStream(), StandardCharsets.US_ASCII));
+                writers[i] = sockets[i].getOutputStream();
+                request(readers[i], writers[i], "NEW " + size[0] + " " + size[1] + " " + size[2]);
+            }
+            long[] latencies = new long[connections * moves];
+            int count = 0;
+            for (int move = 0; move < moves; move++) {
+                for (int i = 0; i < connections; i++) {
+                    String command = "REVEAL " + random.nextInt(size[0]) + " " + random.nextInt(size[1]);
+                    long start = System.nanoTime();
+                    String reply = request(readers[i], writers[i], command);
+                    latencies[count++] = System.nanoTime() - start;
+                    if (!reply.startsWith("OK PLAYING")) {
+                        request(readers[i], writers[i], "NEW " + size[0] + " " + size[1] + " " + size[2]);
+                    }
+                }
+            }
+            return latencies;
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a request and wait for its reply line.
+     * @throws IOException if the connection fails or the server replies with an error
+     */
+    private static String request(BufferedReader reader, OutputStream writer, String command) throws IOException {
+        writer.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+        writer.flush();
+        String reply = reader.readLine();
+        if (reply == null || !reply.startsWith("OK")) {
+            throw new IOException("Server replied " + reply + " to " + command);
+        }
+        return reply;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Board whose packed cells (see {@link PackedBoard}) live in a memory-mapped file instead
+ *  of the heap, so a board can be far bigger than the heap: the operating system pages
+ *  in only the parts the flood fill and the renderer touch, and writes changed cells back
+ *  to the file by itself.
+ * <P> File layout: a header of {@link #HEADER_BYTES} bytes, then one byte per cell in
+ *     index order. The header starts with a magic number and the dimensions; the rest
+ *     of it is left to the game, see {@link #getGameHeader()} and {@link GameFile}. </P>
+ * <P> One mapping can't be bigger than 2 GiB, so the cells are mapped in 1 GiB segments. </P>
+ * @author huynhstin
+ */
+
+final class MappedBoard extends PackedBoard {
+    static final int HEADER_BYTES = 4096;
+    private static final int MAGIC = 0x4D534D42; // "MSMB"
+    private static final int BOARD_HEADER_BYTES = 12; // magic, rows, cols
+    private static final int SEGMENT_SHIFT = 30;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+
+    private MappedBoard(FileChannel channel, int rows, int cols) throws IOException {
+        super(rows, cols);
+        long cells = (long) rows * cols;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        segments = new MappedByteBuffer[(int) ((cells + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + start,
+                    Math.min(1L << SEGMENT_SHIFT, cells - start));
+        }
+    }
+
+    /**
+     * Create a file for a new, empty board, replacing the file if it exists. <br>
+     * The file starts out sparse (all zero, i.e. every cell hidden and empty),
+     *  so creating even a huge board is instant.
+     * @param path file to create
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @throws IOException if the file can't be created
+     * @throws IllegalArgumentException if the board is empty or too big to index
+     */
+    static MappedBoard create(Path path, int rows, int cols) throws IOException {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A " + rows + "x" + cols + " board can't be indexed");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedBoard board = new MappedBoard(channel, rows, cols);
+            board.header.putInt(0, MAGIC).putInt(4, rows).putInt(8, cols);
+            return board;
+        }
+    }
+
+    /**
+     * Map the board of an existing file. Nothing is read but the header.
+     * @param path file written by {@link #create(Path, int, int)}
+     * @throws IOException if the file can't be opened or doesn't hold a board
+     */
+    static MappedBoard open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer start = ByteBuffer.allocate(BOARD_HEADER_BYTES);
+            while (start.hasRemaining()) {
+                if (channel.read(start) < 0) {
+                    throw new IOException(path + " is not a board file");
+                }
+            }
+            start.flip();
+            int rows = start.getInt(4);
+            int cols = start.getInt(8);
+            if (start.getInt(0) != MAGIC || rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE
+                    || channel.size() < HEADER_BYTES + (long) rows * cols) {
+                throw new IOException(path + " is not a board file");
+            }
+            return new MappedBoard(channel, rows, cols);
+        }
+    }
+
+    /**
+     * @return the part of the header that is free for the game to use, from position 0
+     */
+    ByteBuffer getGameHeader() {
+        ByteBuffer game = header.duplicate();
+        game.position(BOARD_HEADER_BYTES);
+        return game.slice();
+    }
+
+    /**
+     * Write the header to the disk, without the cells.
+     */
+    void forceHeader() {
+        header.force();
+    }
+
+    /**
+     * Write every changed page of the file to the disk.
+     */
+    void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    byte get(int index) {
+        return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    @Override
+    void set(int index, byte cell) {
+        segments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, cell);
+    }
+
+    @Override
+    public void clear() {
+        for (MappedByteBuffer segment : segments) {
+            int i = 0;
+            for (; i + 8 <= segment.capacity(); i += 8) {
+                segment.putLong(i, 0);
+            }
+            for (; i < segment.capacity(); i++) {
+                segment.put(i, (byte) 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Chooses where the mines go. <br>
+ * Runs a partial Fisher-Yates shuffle over the linear cell indices, stopping after
+ *  the first {@code mines} picks, so placement costs O(mines) no matter how dense
+ *  the board is. Cells in the safe zone around the first click are left out of the pool.
+ * @author huynhstin
+ */
+
+public final class MinePlacer {
+    /**
+     * Which cells around the first click are guaranteed not to be mines.
+     */
+    public enum SafeZone {
+        /** Only the clicked cell. */
+        CELL,
+        /** The clicked cell and its neighbours, so the first click always opens a region. */
+        OPENING
+    }
+
+    private MinePlacer() {
+    }
+
+    /**
+     * Pick the mine locations for a board. <br>
+     * If the board is too dense to keep the whole safe zone clear, the zone shrinks
+     *  to just the clicked cell; if even that is impossible, fewer mines are placed.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines how many mines to place
+     * @param safeRow row of the first click
+     * @param safeCol col of the first click
+     * @param zone which cells around the first click to keep clear
+     * @param random source of randomness; seed it to get reproducible boards
+     * @return the linear indices (r * cols + c) of the mines
+     */
+    static int[] place(int rows, int cols, int mines, int safeRow, int safeCol,
+                       SafeZone zone, Random random) {
+        return place(rows, cols, mines, safeRow, safeCol, zone, random, new Scratch());
+    }
+
+    /**
+     * Same as {@link #place(int, int, int, int, int, SafeZone, Random)}, but working in
+     *  (and returning) buffers kept in the scratch, so placing again allocates nothing.
+     * @param scratch buffers from an earlier call, or a new Scratch
+     * @return the linear indices of the mines; only valid until the scratch is used again
+     */
+    static int[] place(int rows, int cols, int mines, int safeRow, int safeCol,
+                       SafeZone zone, Random random, Scratch scratch) {
+        int[] excluded = scratch.excluded;
+        int excludedCount = safeZone(rows, cols, safeRow, safeCol, zone, excluded);
+        int size = rows * cols;
+        if (mines > size - excludedCount && zone != SafeZone.CELL) {
+            excludedCount = safeZone(rows, cols, safeRow, safeCol, SafeZone.CELL, excluded);
+        }
+        int pool = size - excludedCount;
+        mines = Math.min(mines, pool);
+
+        // Dense boards shuffle a real array; sparse ones only remember the slots that moved.
+        Slots slots = mines * 4L >= size ? scratch.dense(size) : scratch.sparse(mines + excludedCount);
+
+        /* The pool is slots [0, pool). Safe cells that fall inside it are swapped
+         with the non-safe cells at its tail, so every slot holds a legal cell. */
+        int tail = pool;
+        for (int i = 0; i < excludedCount; i++) {
+            int safe = excluded[i];
+            if (safe < pool) {
+                while (Arrays.binarySearch(excluded, 0, excludedCount, tail) >= 0) {
+                    tail++;
+                }
+                slots.set(safe, tail++);
+            }
+        }
+
+        if (scratch.result.length != mines) {
+            scratch.result = new int[mines];
+        }
+        int[] result = scratch.result;
+        for (int i = 0; i < mines; i++) {
+            int j = i + random.nextInt(pool - i);
+            result[i] = slots.get(j);
+            slots.set(j, slots.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Place mines in one pass over the cells instead of a shuffle (selection sampling):
+     *  each cell outside the safe zone becomes a mine with probability
+     *  (mines still to place) / (cells still to visit), which picks every set of cells
+     *  with the same chance, just like {@link #place}. <br>
+     * It takes O(cells) time but no memory at all, so it suits boards too big to shuffle
+     *  an index array for. The same seed gives a different board than {@link #place}.
+     *  The safe zone shrinks the same way as there.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines how many mines to place
+     * @param safeRow row of the first click
+     * @param safeCol col of the first click
+     * @param zone which cells around the first click to keep clear
+     * @param random source of randomness; seed it to get reproducible boards
+     * @param sink given the index of each mine, in ascending order
+     * @return how many mines were placed
+     */
+    static int stream(int rows, int cols, int mines, int safeRow, int safeCol,
+                      SafeZone zone, Random random, IntConsumer sink) {
+        int[] excluded = new int[9];
+        int excludedCount = safeZone(rows, cols, safeRow, safeCol, zone, excluded);
+        int size = rows * cols;
+        if (mines > size - excludedCount && zone != SafeZone.CELL) {
+            excludedCount = safeZone(rows, cols, safeRow, safeCol, SafeZone.CELL, excluded);
+        }
+        int remaining = size - excludedCount;
+        int needed = Math.min(mines, remaining);
+        int placed = needed;
+
+        int nextExcluded = 0;
+        for (int index = 0; needed > 0; index++) {
+            if (nextExcluded < excludedCount && excluded[nextExcluded] == index) {
+                nextExcluded++;
+                continue;
+            }
+            if (random.nextInt(remaining) < needed) {
+                sink.accept(index);
+                needed--;
+            }
+            remaining--;
+        }
+        return placed;
+    }
+
+    /**
+     * Fill in the cells that must not become mines, in ascending order.
+     * @param into array of at least 9 cells
+     * @return how many cells were filled in
+     */
+    private static int safeZone(int rows, int cols, int r, int c, SafeZone zone, int[] into) {
+        if (zone == SafeZone.CELL) {
+            into[0] = r * cols + c;
+            return 1;
+        }
+        int count = 0;
+        for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++) {
+            for (int nc = Math.max(c - 1, 0); nc <= Math.min(c + 1, cols - 1); nc++) {
+                into[count++] = nr * cols + nc;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Buffers for placing mines, kept by a game so that a reset board is placed without allocating.
+     *  Not thread-safe.
+     */
+    static final class Scratch {
+        private final int[] excluded = new int[9];
+        private int[] result = new int[0];
+        private DenseSlots dense;
+        private SparseSlots sparse;
+
+        private Slots dense(int size) {
+            if (dense == null || dense.values.length != size) {
+                dense = new DenseSlots(size);
+            } else {
+                dense.clear();
+            }
+            return dense;
+        }
+
+        private Slots sparse(int expected) {
+            if (sparse == null || sparse.keys.length < SparseSlots.capacity(expected)) {
+                sparse = new SparseSlots(expected);
+            } else {
+                sparse.clear();
+            }
+            return sparse;
+        }
+    }
+
+    /**
+     * The virtual array being shuffled. Slots that were never written hold their own index.
+     */
+    private interface Slots {
+        int get(int slot);
+
+        void set(int slot, int value);
+    }
+
+    private static final class DenseSlots implements Slots {
+        private final int[] values;
+
+        DenseSlots(int size) {
+            values = new int[size];
+            clear();
+        }
+
+        void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i;
+            }
+        }
+
+        @Override
+        public int get(int slot) {
+            return values[slot];
+        }
+
+        @Override
+        public void set(int slot, int value) {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Open-addressing int to int map, so a sparse shuffle allocates nothing per pick.
+     */
+    private static final class SparseSlots implements Slots {
+        private static final int EMPTY = -1;
+        private final int[] keys;
+        private final int[] values;
+        private final int mask;
+        private final int shift;
+
+        SparseSlots(int expected) {
+            int capacity = capacity(expected);
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            clear();
+        }
+
+        /**
+         * @return table size that keeps the table at most half full
+         */
+        static int capacity(int expected) {
+            return Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private int find(int slot) {
+            int i = (slot * 0x9E3779B9) >>> shift;
+            while (keys[i] != EMPTY && keys[i] != slot) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        @Override
+        public int get(int slot) {
+            int i = find(slot);
+            return keys[i] == EMPTY ? slot : values[i];
+        }
+
+        @Override
+        public void set(int slot, int value) {
+            int i = find(slot);
+            keys[i] = slot;
+            values[i] = value;
+        }
+    }
+}
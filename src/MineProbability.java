@@ -0,0 +1,536 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exact mine probabilities for the covered cells that the {@link Solver} can't decide.
+ * <P> The unknown cells next to revealed numbers are split into independent components
+ *     (cells linked by a shared number). Each component is counted with a dynamic program
+ *     over its cells: the state after deciding a prefix of the cells is just how many mines
+ *     the numbers that are still open need, so equal states are merged and their counts
+ *     cached instead of enumerating every layout. A forward and a backward pass give, for
+ *     every number of mines k, how many layouts there are and how many of them put a mine
+ *     in each cell. </P>
+ * <P> The components are then weighted against each other and against the rest of the
+ *     board with the global mine count: a layout using K frontier mines leaves
+ *     C(other cells, mines left - K) ways to fill everything else. The mines left are the
+ *     game's mines minus those the solver has proven, not minus the player's flags: a flag
+ *     can be wrong, so the overlay ignores flags rather than inherit their mistakes. </P>
+ * <P> A component with too many open numbers at once gives up and is counted like the
+ *     cells away from the frontier; {@link #isExact()} says whether that happened. </P>
+ * @author huynhstin
+ */
+
+public final class MineProbability {
+    // Past this many distinct states at one step, a component is not counted exactly
+    private static final int MAX_STATES = 1 << 16;
+
+    private final Minesweeper game;
+    private final Solver solver;
+    private final Board board;
+    private final Neighbours neighbours;
+
+    private final Map<Integer, Integer> slots = new HashMap<>(); // frontier unknown cell -> probability slot
+    private double[] slotProbability = new double[0];
+    private double otherProbability = 0;
+    private boolean exact = true;
+
+    /**
+     * @param game game to look at
+     * @param solver solver attached to that game, used for the frontier and the cells it already decided
+     */
+    public MineProbability(Minesweeper game, Solver solver) {
+        this.game = game;
+        this.solver = solver;
+        this.board = game.getBoard();
+        this.neighbours = game.getNeighbours();
+    }
+
+    /**
+     * Recompute the probabilities for the current position.
+     */
+    public void compute() {
+        solver.solve();
+        slots.clear();
+        exact = true;
+
+        // One constraint per frontier number: its unknown neighbours must hold need() mines
+        IntList frontier = new IntList();
+        solver.collectFrontier(frontier);
+        List<int[]> constraintCells = new ArrayList<>();
+        IntList constraintNeed = new IntList();
+        IntList cells = new IntList(); // slot -> cell index
+        for (int i = 0; i < frontier.size(); i++) {
+            int index = frontier.get(i);
+            int[] around = new int[8];
+            int count = 0;
+            for (int offset : neighbours.of(index)) {
+                int neighbour = index + offset;
+                if (solver.isUnknown(neighbour)) {
+                    Integer slot = slots.get(neighbour);
+                    if (slot == null) {
+                        slot = cells.size();
+                        slots.put(neighbour, slot);
+                        cells.add(neighbour);
+                    }
+                    around[count++] = slot;
+                }
+            }
+            if (count > 0) {
+                constraintCells.add(Arrays.copyOf(around, count));
+                constraintNeed.add(solver.need(index));
+            }
+        }
+
+        List<Component> components = split(cells.size(), constraintCells, constraintNeed);
+        int otherCells = 0;
+        for (int index = 0; index < game.getRows() * game.getCols(); index++) {
+            if (solver.isUnknown(index) && !slots.containsKey(index)) {
+                otherCells++;
+            }
+        }
+        List<Component> counted = new ArrayList<>();
+        for (Component component : components) {
+            if (component.count()) {
+                counted.add(component);
+            } else {
+                exact = false;
+                otherCells += component.slots.length;
+            }
+        }
+
+        combine(counted, otherCells, game.getMines() - solver.getMinesFound(), cells.size());
+        for (Component component : components) {
+            if (component.total == null) {
+                for (int slot : component.slots) {
+                    slotProbability[slot] = otherProbability;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return probability that the cell is a mine: 0 for revealed or proven safe cells,
+     *          1 for proven mines
+     */
+    public double get(int r, int c) {
+        if (solver.isMine(r, c)) {
+            return 1;
+        }
+        if (solver.isSafe(r, c)) {
+            return 0;
+        }
+        Integer slot = slots.get(board.index(r, c));
+        return slot != null ? slotProbability[slot] : otherProbability;
+    }
+
+    /**
+     * @return index of the covered cell least likely to be a mine, or -1 if there is none
+     */
+    public int safest() {
+        int best = -1;
+        double bestProbability = 2;
+        for (Map.Entry<Integer, Integer> entry : slots.entrySet()) {
+            if (slotProbability[entry.getValue()] < bestProbability) {
+                bestProbability = slotProbability[entry.getValue()];
+                best = entry.getKey();
+            }
+        }
+        if (otherProbability < bestProbability) {
+            for (int index = 0; index < game.getRows() * game.getCols(); index++) {
+                if (solver.isUnknown(index) && !slots.containsKey(index)) {
+                    return index;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return whether every component was counted exactly in the last {@link #compute()}
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Group the slots into components that share constraints (union-find).
+     */
+    private static List<Component> split(int slotCount, List<int[]> constraintCells, IntList constraintNeed) {
+        int[] parent = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            parent[i] = i;
+        }
+        for (int[] around : constraintCells) {
+            for (int i = 1; i < around.length; i++) {
+                parent[find(parent, around[i])] = find(parent, around[0]);
+            }
+        }
+
+        Map<Integer, List<Integer>> byRoot = new HashMap<>();
+        for (int j = 0; j < constraintCells.size(); j++) {
+            int root = find(parent, constraintCells.get(j)[0]);
+            List<Integer> members = byRoot.get(root);
+            if (members == null) {
+                members = new ArrayList<>();
+                byRoot.put(root, members);
+            }
+            members.add(j);
+        }
+
+        List<Component> components = new ArrayList<>();
+        for (List<Integer> members : byRoot.values()) {
+            components.add(new Component(members, constraintCells, constraintNeed));
+        }
+        return components;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Weigh the components against each other and the rest of the board.
+     * @param components counted components
+     * @param otherCells unknown cells that are not in a counted component
+     * @param minesLeft mines not yet proven
+     * @param slotCount number of slots
+     */
+    private void combine(List<Component> components, int otherCells, int minesLeft, int slotCount) {
+        slotProbability = new double[slotCount];
+        int n = components.size();
+
+        // prefix[i] is the distribution of mines over components 0..i-1, suffix[i] over i..n-1
+        double[][] prefix = new double[n + 1][];
+        double[][] suffix = new double[n + 1][];
+        prefix[0] = new double[] {1};
+        suffix[n] = new double[] {1};
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = convolve(prefix[i], components.get(i).total);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffix[i] = convolve(components.get(i).total, suffix[i + 1]);
+        }
+        double[] all = prefix[n];
+
+        // weight[K]: ways to place the other minesLeft - K mines on the other cells, scaled
+        double[] weight = new double[all.length];
+        double[] logWeight = new double[all.length];
+        double maxLog = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < all.length; k++) {
+            int rest = minesLeft - k;
+            logWeight[k] = rest < 0 || rest > otherCells ? Double.NEGATIVE_INFINITY : logChoose(otherCells, rest);
+            maxLog = Math.max(maxLog, logWeight[k]);
+        }
+        if (maxLog == Double.NEGATIVE_INFINITY) { // no mine count fits the rest of the board
+            otherProbability = 0;
+            return;
+        }
+        for (int k = 0; k < all.length; k++) {
+            weight[k] = Math.exp(logWeight[k] - maxLog);
+        }
+
+        double total = 0;
+        double otherMines = 0;
+        for (int k = 0; k < all.length; k++) {
+            total += all[k] * weight[k];
+            otherMines += all[k] * weight[k] * (minesLeft - k);
+        }
+        if (total == 0) { // the position is inconsistent, e.g. right after a loss
+            otherProbability = 0;
+            return;
+        }
+        otherProbability = otherCells > 0 ? otherMines / total / otherCells : 0;
+
+        for (int i = 0; i < n; i++) {
+            Component component = components.get(i);
+            double[] others = convolve(prefix[i], suffix[i + 1]);
+            // byMines[k]: total weight of everything else when this component holds k mines
+            double[] byMines = new double[component.total.length];
+            for (int k = 0; k < byMines.length; k++) {
+                for (int j = 0; j < others.length && k + j < weight.length; j++) {
+                    byMines[k] += others[j] * weight[k + j];
+                }
+            }
+            for (int s = 0; s < component.slots.length; s++) {
+                double mines = 0;
+                double[] perCell = component.perCell[s];
+                for (int k = 0; k < perCell.length; k++) {
+                    mines += perCell[k] * byMines[k];
+                }
+                slotProbability[component.slots[s]] = mines / total;
+            }
+        }
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != 0) {
+                for (int j = 0; j < b.length; j++) {
+                    result[i + j] += a[i] * b[j];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static double logChoose(int n, int k) {
+        k = Math.min(k, n - k);
+        double result = 0;
+        for (int i = 1; i <= k; i++) {
+            result += Math.log(n - k + i) - Math.log(i);
+        }
+        return result;
+    }
+
+    /**
+     * One independent group of frontier cells and the numbers around them.
+     */
+    private static final class Component {
+        final int[] slots; // in the order the dynamic program decides them
+        final int[][] constraints; // positions (into slots) of each constraint's cells, ascending
+        final int[] need;
+        double[] total; // total[k]: layouts with k mines; null if not counted
+        double[][] perCell; // perCell[s][k]: of those, how many put a mine on slots[s]
+
+        Component(List<Integer> members, List<int[]> constraintCells, IntList constraintNeed) {
+            // Order the cells breadth first through the constraints, so few constraints are open at once
+            Map<Integer, List<Integer>> bySlot = new HashMap<>();
+            for (int j : members) {
+                for (int slot : constraintCells.get(j)) {
+                    List<Integer> touching = bySlot.get(slot);
+                    if (touching == null) {
+                        touching = new ArrayList<>();
+                        bySlot.put(slot, touching);
+                    }
+                    touching.add(j);
+                }
+            }
+            Map<Integer, Integer> position = new HashMap<>();
+            List<Integer> order = new ArrayList<>();
+            List<Integer> constraintOrder = new ArrayList<>();
+            Map<Integer, Boolean> seen = new HashMap<>();
+            constraintOrder.add(members.get(0));
+            seen.put(members.get(0), true);
+            for (int q = 0; q < constraintOrder.size(); q++) {
+                for (int slot : constraintCells.get(constraintOrder.get(q))) {
+                    if (!position.containsKey(slot)) {
+                        position.put(slot, order.size());
+                        order.add(slot);
+                        for (int j : bySlot.get(slot)) {
+                            if (seen.put(j, true) == null) {
+                                constraintOrder.add(j);
+                            }
+                        }
+                    }
+                }
+            }
+
+            slots = new int[order.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = order.get(i);
+            }
+            constraints = new int[constraintOrder.size()][];
+            need = new int[constraintOrder.size()];
+            for (int q = 0; q < constraints.length; q++) {
+                int j = constraintOrder.get(q);
+                int[] around = constraintCells.get(j);
+                constraints[q] = new int[around.length];
+                for (int i = 0; i < around.length; i++) {
+                    constraints[q][i] = position.get(around[i]);
+                }
+                Arrays.sort(constraints[q]);
+                need[q] = constraintNeed.get(j);
+            }
+        }
+
+        /**
+         * Run the dynamic program.
+         * @return false if there were too many states to count exactly
+         */
+        boolean count() {
+            int m = slots.length;
+            int q = constraints.length;
+            int[] first = new int[q];
+            int[] last = new int[q];
+            List<List<Integer>> touching = new ArrayList<>();
+            for (int b = 0; b < m; b++) {
+                touching.add(new ArrayList<>());
+            }
+            for (int j = 0; j < q; j++) {
+                first[j] = constraints[j][0];
+                last[j] = constraints[j][constraints[j].length - 1];
+                for (int position : constraints[j]) {
+                    touching.get(position).add(j);
+                }
+            }
+            // open[b]: constraints with cells both before and at or after position b
+            int[][] open = new int[m + 1][];
+            for (int b = 0; b <= m; b++) {
+                IntList list = new IntList();
+                for (int j = 0; j < q; j++) {
+                    if (first[j] < b && b <= last[j]) {
+                        list.add(j);
+                    }
+                }
+                open[b] = toArray(list);
+            }
+            Step step = new Step(constraints, need, first, last, touching, open);
+
+            // Forward: how many ways to reach each state, by mines used so far
+            List<Map<String, double[]>> forward = new ArrayList<>();
+            Map<String, double[]> layer = new HashMap<>();
+            layer.put("", new double[] {1});
+            forward.add(layer);
+            for (int b = 0; b < m; b++) {
+                Map<String, double[]> next = new HashMap<>();
+                for (Map.Entry<String, double[]> entry : layer.entrySet()) {
+                    for (int x = 0; x <= 1; x++) {
+                        String to = step.apply(b, entry.getKey(), x);
+                        if (to != null) {
+                            double[] counts = next.get(to);
+                            if (counts == null) {
+                                counts = new double[b + 2];
+                                next.put(to, counts);
+                            }
+                            addShifted(counts, entry.getValue(), x);
+                        }
+                    }
+                }
+                if (next.size() > MAX_STATES) {
+                    return false;
+                }
+                forward.add(next);
+                layer = next;
+            }
+
+            // Backward: how many ways to finish from each state, by mines still to place
+            List<Map<String, double[]>> backward = new ArrayList<>();
+            for (int b = 0; b <= m; b++) {
+                backward.add(null);
+            }
+            Map<String, double[]> end = new HashMap<>();
+            end.put("", new double[] {1});
+            backward.set(m, end);
+            perCell = new double[m][m + 1];
+            for (int b = m - 1; b >= 0; b--) {
+                Map<String, double[]> after = backward.get(b + 1);
+                Map<String, double[]> here = new HashMap<>();
+                for (Map.Entry<String, double[]> entry : forward.get(b).entrySet()) {
+                    double[] ways = new double[m - b + 1];
+                    for (int x = 0; x <= 1; x++) {
+                        String to = step.apply(b, entry.getKey(), x);
+                        double[] rest = to == null ? null : after.get(to);
+                        if (rest == null) {
+                            continue;
+                        }
+                        addShifted(ways, rest, x);
+                        if (x == 1) {
+                            // layouts through this state that put a mine on slot b
+                            double[] before = entry.getValue();
+                            for (int k1 = 0; k1 < before.length; k1++) {
+                                if (before[k1] != 0) {
+                                    for (int k2 = 0; k2 < rest.length; k2++) {
+                                        perCell[b][k1 + 1 + k2] += before[k1] * rest[k2];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    here.put(entry.getKey(), ways);
+                }
+                backward.set(b, here);
+            }
+            total = backward.get(0).get("");
+            return true;
+        }
+
+        private static void addShifted(double[] into, double[] from, int shift) {
+            for (int k = 0; k < from.length; k++) {
+                into[k + shift] += from[k];
+            }
+        }
+
+        private static int[] toArray(IntList list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Transition of the dynamic program. A state is the number of mines each open
+     *  constraint still needs, one char per constraint in the order of open[b].
+     */
+    private static final class Step {
+        private final int[][] constraints;
+        private final int[] need;
+        private final int[] first;
+        private final int[] last;
+        private final List<List<Integer>> touching;
+        private final int[][] open;
+        private final int[] residual;
+
+        Step(int[][] constraints, int[] need, int[] first, int[] last,
+             List<List<Integer>> touching, int[][] open) {
+            this.constraints = constraints;
+            this.need = need;
+            this.first = first;
+            this.last = last;
+            this.touching = touching;
+            this.open = open;
+            this.residual = new int[need.length];
+        }
+
+        /**
+         * Decide slot b.
+         * @param b position being decided
+         * @param state state before position b
+         * @param mine 1 to put a mine there, 0 not to
+         * @return state after position b, or null if that breaks a constraint
+         */
+        String apply(int b, String state, int mine) {
+            int[] before = open[b];
+            for (int i = 0; i < before.length; i++) {
+                residual[before[i]] = state.charAt(i);
+            }
+            for (int j : touching.get(b)) {
+                if (first[j] == b) {
+                    residual[j] = need[j];
+                }
+                residual[j] -= mine;
+                if (residual[j] < 0 || residual[j] > cellsAfter(j, b)) {
+                    return null;
+                }
+            }
+            int[] after = open[b + 1];
+            char[] next = new char[after.length];
+            for (int i = 0; i < after.length; i++) {
+                next[i] = (char) residual[after[i]];
+            }
+            return new String(next);
+        }
+
+        private int cellsAfter(int j, int b) {
+            if (last[j] == b) {
+                return 0;
+            }
+            int count = 0;
+            for (int position : constraints[j]) {
+                if (position > b) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
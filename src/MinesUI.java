@@ -4,20 +4,26 @@ import java.awt.Desktop;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
 
 import java.awt.image.BufferedImage;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
@@ -25,6 +31,7 @@ import javax.swing.border.MatteBorder;
 import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
@@ -32,9 +39,13 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextField;
+import javax.swing.JViewport;
 import javax.swing.KeyStroke;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 import javax.swing.UIManager;
@@ -46,14 +57,27 @@ import javax.swing.UnsupportedLookAndFeelException;
  */
 
 public class MinesUI {
-    private Minesweeper game = new Minesweeper(9, 9, 10);
-    private final SpriteLoader loader = new SpriteLoader();
+    private final GameThread engine = new GameThread(new Minesweeper(9, 9, 10), this::show, this::showFailure);
+    private GameThread.Changes shown; // the last batch shown, null until the first arrives
+    private Minesweeper.Status status = Minesweeper.Status.PLAYING; // of the game asked for last
+    private final SpriteLoader loader = SpriteLoader.get();
     private final JFrame frame = new JFrame();
     private final JButton faceButton = new JButton();
     private static final Color background = new Color(192, 192, 192);
+    private static final Color hintColor = new Color(0, 160, 0);
+    private static final Color mineColor = new Color(255, 0, 0);
+    private static final Color[] tintColors = tintColors(); // mine colour at each tint, 0 to 160
     private final FlagDisplay flagger = new FlagDisplay();
     private final DigClock clock = new DigClock();
-    private Grid grid = new Grid();
+    private final JCheckBoxMenuItem marksOn = new JCheckBoxMenuItem("Marks (?)");
+    private final JMenuItem hintOption = new JMenuItem("Hint");
+    private final JCheckBoxMenuItem probabilities = new JCheckBoxMenuItem("Mine Probabilities");
+    private final Grid grid = new Grid(9, 9);
+    private final NoGuessGenerator noGuess = new NoGuessGenerator();
+    private boolean noGuessOption = false;
+    private boolean showProbabilities = false;
+    private GameRecorder recorder; // null unless games are being recorded
+    private final JScrollPane scroller = new JScrollPane(grid);
 
     private MinesUI() {
         init();
@@ -68,6 +92,12 @@ public class MinesUI {
         }
 
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopRecording();
+            }
+        });
         frame.setResizable(false);
         frame.setTitle("Minesweeper");
         frame.setBackground(background);
@@ -82,6 +112,17 @@ public class MinesUI {
         newGameOption.addActionListener(e -> reset());
         newGameOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F2, 0));
 
+        JMenuItem openOption = new JMenuItem("Open...");
+        openOption.addActionListener(e -> openGame());
+        openOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK));
+
+        JMenuItem saveOption = new JMenuItem("Save...");
+        saveOption.addActionListener(e -> saveGame());
+        saveOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK));
+
+        JCheckBoxMenuItem recordOn = new JCheckBoxMenuItem("Record Games...");
+        recordOn.addActionListener(e -> recordOn.setSelected(toggleRecording()));
+
         JSeparator separatorOne = new JSeparator();
         separatorOne.setPreferredSize(new Dimension(0, 1));
 
@@ -97,17 +138,34 @@ public class MinesUI {
         JSeparator separatorTwo = new JSeparator();
         separatorTwo.setPreferredSize(new Dimension(0, 1));
 
-        JCheckBoxMenuItem marksOn = new JCheckBoxMenuItem("Marks (?)");
-        marksOn.addActionListener(e -> game.setMarkOption(!game.getMarkOption()));
+        marksOn.addActionListener(e -> {
+            boolean marks = marksOn.isSelected();
+            engine.update(game -> game.setMarkOption(marks));
+        });
         marksOn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_SLASH, 0));
 
+        JCheckBoxMenuItem noGuessOn = new JCheckBoxMenuItem("No Guessing");
+        noGuessOn.addActionListener(e -> {
+            noGuessOption = !noGuessOption;
+            applyNoGuess();
+        });
+
+        hintOption.addActionListener(e -> showHint());
+        hintOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_H, 0));
+
         JSeparator separatorThree = new JSeparator();
         separatorThree.setPreferredSize(new Dimension(0, 1));
 
         JMenuItem exitOption = new JMenuItem("Exit");
-        exitOption.addActionListener(e -> System.exit(0));
+        exitOption.addActionListener(e -> {
+            stopRecording();
+            System.exit(0);
+        });
 
         menu.add(newGameOption);
+        menu.add(openOption);
+        menu.add(saveOption);
+        menu.add(recordOn);
         menu.add(separatorOne);
         menu.add(easyOption);
         menu.add(medOption);
@@ -115,10 +173,39 @@ public class MinesUI {
         menu.add(custom);
         menu.add(separatorTwo);
         menu.add(marksOn);
+        menu.add(noGuessOn);
+        menu.add(hintOption);
         menu.add(separatorThree);
         menu.add(exitOption);
         menuBar.add(menu);
 
+        JMenu view = new JMenu("View");
+        JMenuItem zoomIn = new JMenuItem("Zoom In");
+        zoomIn.addActionListener(e -> grid.zoom(1, null));
+        zoomIn.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, InputEvent.CTRL_DOWN_MASK));
+        JMenuItem zoomOut = new JMenuItem("Zoom Out");
+        zoomOut.addActionListener(e -> grid.zoom(-1, null));
+        zoomOut.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, InputEvent.CTRL_DOWN_MASK));
+        JMenuItem actualSize = new JMenuItem("Actual Size");
+        actualSize.addActionListener(e -> grid.zoom(0, null));
+        actualSize.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK));
+
+        JSeparator separatorFour = new JSeparator();
+        separatorFour.setPreferredSize(new Dimension(0, 1));
+
+        probabilities.addActionListener(e -> {
+            showProbabilities = !showProbabilities;
+            engine.setProbabilities(showProbabilities);
+        });
+        probabilities.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_P, 0));
+
+        view.add(zoomIn);
+        view.add(zoomOut);
+        view.add(actualSize);
+        view.add(separatorFour);
+        view.add(probabilities);
+        menuBar.add(view);
+
         JMenu help = new JMenu("Help");
         JMenuItem link = new JMenuItem("How to Play");
         link.addActionListener(event -> {
@@ -171,7 +258,12 @@ public class MinesUI {
         topPanel.setBackground(background);
         frame.add(topPanel, BorderLayout.NORTH);
 
-        frame.add(grid);
+        scroller.setBorder(new CompoundBorder(new EmptyBorder(5, 10, 10, 10),
+                new MatteBorder(0, 0, 1, 1, new Color(128, 128, 128))));
+        scroller.setBackground(background);
+        scroller.getViewport().setBackground(background);
+        scroller.getViewport().addChangeListener(e -> grid.follow());
+        frame.add(scroller);
         frame.pack();
         frame.setLocationRelativeTo(null);
     }
@@ -180,19 +272,20 @@ public class MinesUI {
      * Shows the dialog to input a custom size for the board.
      */
     private void showCustomSizer() {
-        final int MAX_ROWS = 45;
+        final int MAX_ROWS = 10000;
         final int MIN_ROWS = 3;
-        final int MAX_COLS = 45;
+        final int MAX_COLS = 10000;
         final int MIN_COLS = 9;
-        final int MAX_MINES = 999;
+        final int MAX_RANDOM_SIZE = 45; // "Randomize" sticks to boards that fit on screen
+        final int MAX_RANDOM_MINES = 999;
         final int MIN_MINES = 1;
         final float MAX_PERCENT_MINES = 0.6f;
 
         Object[] options = {"OK", "Randomize", "Cancel"};
 
-        JTextField rowsField = new JTextField(String.valueOf(game.getDimAndMines()[0]));
-        JTextField colsField = new JTextField(String.valueOf(game.getDimAndMines()[1]));
-        JTextField minesField = new JTextField(String.valueOf(game.getDimAndMines()[2]));
+        JTextField rowsField = new JTextField(String.valueOf(grid.rows));
+        JTextField colsField = new JTextField(String.valueOf(grid.cols));
+        JTextField minesField = new JTextField(String.valueOf(shown != null ? shown.getMines() : 0));
 
         JPanel p = new JPanel();
         p.setLayout(new GridLayout(3, 1));
@@ -220,10 +313,8 @@ public class MinesUI {
                     if (dim[2] < MIN_MINES) {
                         dim[2] = MIN_MINES; // must have at least one mine
                     } else {
-                        int cutOffMines = (int) (dim[0] * dim[1] * MAX_PERCENT_MINES);
-                        if (cutOffMines > MAX_MINES) {
-                            cutOffMines = MAX_MINES;
-                        }
+                        int cutOffMines = (int) ((long) Math.min(dim[0], MAX_ROWS)
+                                * Math.min(dim[1], MAX_COLS) * MAX_PERCENT_MINES);
                         if (dim[2] > cutOffMines) {
                             dim[2] = cutOffMines;
                         }
@@ -245,11 +336,11 @@ public class MinesUI {
                 break;
             case 1: // randomize
                 Random randy = new Random();
-                int rows = randy.nextInt(MAX_ROWS) + MIN_ROWS;
-                int cols = randy.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
+                int rows = randy.nextInt(MAX_RANDOM_SIZE - MIN_ROWS + 1) + MIN_ROWS;
+                int cols = randy.nextInt(MAX_RANDOM_SIZE - MIN_COLS + 1) + MIN_COLS;
                 int mines = randy.nextInt((int) (rows * cols * MAX_PERCENT_MINES) - 1) + MIN_MINES;
-                if (mines > MAX_MINES) {
-                    mines = MAX_MINES;
+                if (mines > MAX_RANDOM_MINES) {
+                    mines = MAX_RANDOM_MINES;
                 }
                 resetNewDiff(rows, cols, mines);
                 break;
@@ -258,74 +349,226 @@ public class MinesUI {
 
     /**
      * Reset game with the same difficulty as before.
-     * Do this by creating a new Minesweeper object, and resetting timer and flags.
+     * The game clears its board in place, so nothing is allocated; the timer is reset.
      * Note that we do not need to create a new Grid object:
-     *      we only have to update its sprites since the dimensions will remain the same.
+     *      the new game's first batch redraws all of its sprites, see {@link #show}.
      */
     private void reset() {
-        boolean marks = game.getMarkOption();
-        game = new Minesweeper(game.getDimAndMines()[0],
-                game.getDimAndMines()[1], game.getDimAndMines()[2]);
-        game.setMarkOption(marks);
-
-        flagger.updateFlags();
+        engine.reset();
+        GameRecorder log = recorder;
+        engine.update(game -> game.setRecorder(log)); // a loaded game that had started wasn't being recorded
+        status = Minesweeper.Status.PLAYING;
+        grid.setHint(-1);
 
         clock.resetTimer();
 
         faceButton.setIcon(loader.getFaceSprite(0));
+    }
 
-        frame.revalidate();
-        grid.repaint();
-        grid.updateImgs();
-        System.gc();
+    /**
+     * Ask for a file and save the game to it, see {@link GameFile}.
+     *  A game on a mapped board is already in its file, so it is just checkpointed.
+     */
+    private void saveGame() {
+        int seconds = clock.getSeconds();
+        engine.query(GameFile::isMapped, mapped -> {
+            if (mapped) {
+                engine.update(game -> GameFile.checkpoint(game, seconds));
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path path = chooser.getSelectedFile().toPath();
+            engine.query(game -> {
+                try {
+                    GameFile.save(game, seconds, path);
+                    return null;
+                } catch (IOException e) {
+                    return e;
+                }
+            }, e -> {
+                if (e != null) {
+                    JOptionPane.showMessageDialog(frame, "Could not save the game: " + e.getMessage(),
+                            "Save", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        });
     }
 
     /**
-     * Reset game with a new difficulty setting
+     * Ask for a saved game and carry on playing it. The clock starts again on the next click.
      */
-    private void resetNewDiff(int rows, int cols, int mines) {
-        // Don't do anything if we're already at that difficulty.
-        if (game.getDimAndMines()[0] == rows && game.getDimAndMines()[1] == cols && game.getDimAndMines()[2] == mines) {
+    private void openGame() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        GameFile.Saved saved;
+        try {
+            saved = GameFile.open(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Could not open the game: " + e.getMessage(),
+                    "Open", JOptionPane.ERROR_MESSAGE);
             return;
         }
+        // Set up before it goes to the game thread, after which only that thread may touch it
+        Minesweeper game = saved.getGame();
+        if (!game.isStarted()) {
+            game.setRecorder(recorder);
+        }
+        marksOn.setSelected(game.getMarkOption());
+        applyNoGuess(game, noGuessOption ? noGuess : null);
+        game.setParallelFill(ForkJoinPool.commonPool());
+        status = game.getStatus();
+        engine.replace(game);
+        grid.setHint(-1);
 
-        boolean marks = game.getMarkOption();
-        game = new Minesweeper(rows, cols, mines);
-        game.setMarkOption(marks);
+        clock.resetTimer();
+        clock.setSeconds(saved.getSeconds());
+    }
 
-        frame.remove(grid);
+    /**
+     * Start recording games to a log chosen by the user, beginning with a new game,
+     *  or stop recording. The log can be played back by the {@link Replayer}.
+     * @return whether games are being recorded now
+     */
+    private boolean toggleRecording() {
+        if (recorder != null) {
+            stopRecording();
+            return false;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return false;
+        }
+        try {
+            recorder = new GameRecorder(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Could not record games: " + e.getMessage(),
+                    "Record", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        reset();
+        return true;
+    }
 
-        grid.killAll();
-        grid.removeAll();
-        grid = new Grid();
-        frame.add(grid);
+    /**
+     * Stop recording, if games are being recorded, and write out the rest of the log.
+     */
+    private void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        GameRecorder log = recorder;
+        recorder = null;
+        // Waits for the moves already queued, so that they make it into the log
+        IOException e = engine.call(game -> {
+            game.setRecorder(null);
+            try {
+                log.close();
+                return null;
+            } catch (IOException closing) {
+                return closing;
+            }
+        });
+        if (e != null) {
+            JOptionPane.showMessageDialog(frame, "Could not record games: " + e.getMessage(),
+                    "Record", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Reset game with a new difficulty setting
+     */
+    private void resetNewDiff(int rows, int cols, int mines) {
+        // Don't do anything if we're already at that difficulty.
+        if (shown != null && shown.getRows() == rows && shown.getCols() == cols && shown.getMines() == mines) {
+            return;
+        }
 
-        flagger.updateFlags();
+        Minesweeper game = new Minesweeper(rows, cols, mines);
+        game.setMarkOption(marksOn.isSelected());
+        game.setRecorder(recorder);
+        applyNoGuess(game, noGuessOption ? noGuess : null);
+        game.setParallelFill(ForkJoinPool.commonPool());
+        status = Minesweeper.Status.PLAYING;
+        engine.replace(game);
+        grid.setHint(-1);
 
         clock.resetTimer();
 
         faceButton.setIcon(loader.getFaceSprite(0));
+    }
 
-        frame.revalidate();
-        frame.pack();
-        System.gc();
+    /**
+     * Outline a cell that the solver can prove is safe, if there is one.
+     */
+    private void showHint() {
+        if (status != Minesweeper.Status.PLAYING) {
+            return;
+        }
+        engine.hint(grid::setHint);
     }
 
-    private void endGameCheck() {
-        if (game.isDead()) {
-            clock.endTimer();
-            faceButton.setIcon(loader.getFaceSprite(4));
-            grid.repaint();
-        } else if (game.checkWin()) {
+    /**
+     * Make the current game generate a no-guess board on its first click, if that option is on.
+     */
+    private void applyNoGuess() {
+        NoGuessGenerator generator = noGuessOption ? noGuess : null;
+        engine.update(game -> applyNoGuess(game, generator));
+    }
+
+    /**
+     * The board needs an opening around the first click for the solver to get started.
+     * @param generator generator to search with, or null for plain random boards
+     */
+    private static void applyNoGuess(Minesweeper game, NoGuessGenerator generator) {
+        game.setSafeZone(generator != null ? MinePlacer.SafeZone.OPENING : MinePlacer.SafeZone.CELL);
+        game.setNoGuess(generator);
+    }
+
+    /**
+     * Show a batch of changes from the game thread: the cells, the flags left and,
+     *  once the game is over, the face and the stopped clock.
+     */
+    private void show(GameThread.Changes changes) {
+        shown = changes;
+        status = changes.getStatus();
+        // The solver doesn't take on huge boards, see GameThread.canSolve
+        boolean solvable = GameThread.canSolve(changes.getRows(), changes.getCols());
+        hintOption.setEnabled(solvable);
+        probabilities.setEnabled(solvable);
+        boolean resized = grid.show(changes);
+        flagger.updateFlags(changes.getFlagsLeft());
+        if (status != Minesweeper.Status.PLAYING) {
             clock.endTimer();
-            faceButton.setIcon(loader.getFaceSprite(3));
-            grid.updateImgs();
+        }
+        // A move leaves the face alone while it's pushed for the next one
+        if (changes.isFresh() || status != Minesweeper.Status.PLAYING) {
+            faceButton.setIcon(loader.getFaceSprite(status == Minesweeper.Status.LOST ? 4
+                    : status == Minesweeper.Status.WON ? 3 : 0));
+        }
+        if (resized) {
+            frame.revalidate();
+            frame.pack();
         }
     }
 
+    /**
+     * Tell the user that something went wrong in the game; the game thread sends the board
+     *  again right after, so the view shows what the game is really like.
+     */
+    private void showFailure(Throwable e) {
+        JOptionPane.showMessageDialog(frame, "Something went wrong in the game: " + e,
+                "Minesweeper", JOptionPane.ERROR_MESSAGE);
+    }
+
     class DigClock extends JComponent {
         private final int DIGITS = 3;
         private int secs = 1;
+        private int shown = 0; // seconds on the display
         private boolean started = false;
         private JLabel[] timeLabels = new JLabel[DIGITS];
         private Timer t;
@@ -335,6 +578,7 @@ public class MinesUI {
             this.setLayout(new FlowLayout(FlowLayout.RIGHT, 0, 0));
             this.setBorder(new EmptyBorder(7, 0, 0, 15));
             this.setBackground(background);
+            this.setToolTipText(""); // registers with the tooltip manager, see getToolTipText
 
             // Initialize to all 0 sprites
             for (int i = 0; i < DIGITS; i++) {
@@ -347,21 +591,24 @@ public class MinesUI {
                 if (secs > 999) {
                     secs = 0;
                 }
-
-                String model = String.format("%03d", secs);
-                for (int i = 0; i < DIGITS; i++) {
-                    timeLabels[i].setIcon(loader.getNumberSprite(Character.getNumericValue(model.charAt(i))));
-                }
-                this.repaint();
+                show(secs);
             });
         }
 
+        private void show(int seconds) {
+            shown = seconds;
+            String model = String.format("%03d", seconds);
+            for (int i = 0; i < DIGITS; i++) {
+                timeLabels[i].setIcon(loader.getNumberSprite(Character.getNumericValue(model.charAt(i))));
+            }
+            this.repaint();
+        }
+
         void startTimer() {
             started = true;
 
-            // Make timer display "001" on first click.
-            timeLabels[2].setIcon(loader.getNumberSprite(1));
-            this.repaint();
+            // Make timer display "001" on first click, or carry on from a loaded game's time.
+            show(secs);
             t.start();
         }
 
@@ -375,8 +622,24 @@ public class MinesUI {
             t.stop();
             secs = 1;
             // Reset timer to "000"
-            for (int i = 0; i < DIGITS; i++) {
-                timeLabels[i].setIcon(loader.getNumberSprite(0));
+            show(0);
+        }
+
+        /**
+         * @return seconds on the display
+         */
+        int getSeconds() {
+            return shown;
+        }
+
+        /**
+         * Show the time of a loaded game; the clock carries on from there when it is started.
+         *  0 leaves the clock as it is after a reset.
+         */
+        void setSeconds(int seconds) {
+            if (seconds > 0) {
+                secs = seconds;
+                show(seconds);
             }
         }
 
@@ -384,6 +647,21 @@ public class MinesUI {
             return started;
         }
 
+        /**
+         * Hovering over the clock shows how hard the board is and how fast it's being cleared.
+         */
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            GameThread.Changes stats = MinesUI.this.shown;
+            if (stats == null || stats.getBbbv() == 0) {
+                return stats != null && stats.isStarted() ? "Board too large to analyze" : "No board yet";
+            }
+            int cleared = stats.getBbbv() - stats.getBbbvLeft();
+            return String.format("3BV %d (%d left), %.2f 3BV/s, %d openings, %d isolated numbers",
+                    stats.getBbbv(), stats.getBbbvLeft(), (double) cleared / Math.max(secs, 1),
+                    stats.getOpenings(), stats.getIsolatedNumbers());
+        }
+
         @Override
         public Dimension getPreferredSize() {
             return new Dimension(loader.getNumDimensions()[0],
@@ -404,14 +682,15 @@ public class MinesUI {
                 digitLabels[i] = new JLabel();
                 this.add(digitLabels[i]);
             }
-            updateFlags();
+            updateFlags(0);
             this.setLayout(new FlowLayout(FlowLayout.LEFT, 0, 0));
             this.setBorder(new EmptyBorder(7, 15, 0, 0));
             this.setBackground(background);
         }
 
-        void updateFlags() {
-            String model = String.format("%03d", game.getFlagsLeft());
+        void updateFlags(int flagsLeft) {
+            // Only three digits to show, so big custom boards show 999 until the count drops
+            String model = String.format("%03d", Math.min(flagsLeft, 999));
             for (int i = 0; i < DIGITS; i++) {
                 digitLabels[i].setIcon(loader.getNumberSprite(Character.getNumericValue(model.charAt(i))));
             }
@@ -425,159 +704,412 @@ public class MinesUI {
         }
     }
 
-     class Grid extends JPanel {
-        private Square[][] cells;
+    /**
+     * The board, painted as a single component inside a scroll pane. <br>
+     * Only the tiles inside the clip are painted, from a sprite per cell that is kept up to date
+     *  from the game thread's {@link GameThread.Changes} batches, never from the game itself.
+     *  Sprites are only held for a window around the view, which the game thread is asked to
+     *  move when the view scrolls out of it, so both the cost of a frame and the memory held
+     *  depend on the size of the view, not of the board.
+     *  Cells that change only repaint their own rectangles, and mouse coordinates
+     *  are mapped to cells arithmetically. <br>
+     * Ctrl + mouse wheel zooms in and out around the cursor.
+     */
+    class Grid extends JComponent implements Scrollable {
+        private final int[] ZOOM_PERCENTS = {25, 50, 75, 100, 150, 200, 300};
+        private final int DEFAULT_ZOOM = 3;
         private int rows;
         private int cols;
-        Grid() {
-            rows = game.getDimAndMines()[0];
-            cols = game.getDimAndMines()[1];
-            createBoard();
-            this.setBackground(background);
-            this.setBorder(new CompoundBorder(new EmptyBorder(5, 10, 10, 10),
-                    new MatteBorder(0, 0, 1, 1, new Color(128, 128, 128))));
-        }
-
-        void createBoard() {
-            setLayout(new GridBagLayout());
-            GridBagConstraints gbc = new GridBagConstraints();
-            cells = new Square[rows][cols];
-
-            for (int r = 0; r < rows; r++) {
-                for (int c = 0; c < cols; c++) {
-                    gbc.gridx = c;
-                    gbc.gridy = r;
-                    Square square = new Square(r, c);
-                    cells[r][c] = square;
-                    this.add(square, gbc);
-                }
-            }
-        }
+        private byte[] sprites; // tile sprite of each cell of the window, see SpriteLoader.getTileSprite
+        private byte[] tint; // red tint of each cell of the window by its mine probability, or null
+        private int windowTop; // the window the sprites are for, that of the last batch
+        private int windowLeft;
+        private int windowRows;
+        private int windowCols;
+        private int wantTop; // the window last asked for
+        private int wantLeft;
+        private int wantBottom;
+        private int wantRight;
+        private int zoom = DEFAULT_ZOOM;
+        private int tileWidth;
+        private int tileHeight;
+        private int pressed = -1; // index of the cell the mouse was pressed on
+        private int hint = -1; // index of the cell outlined as a hint
+        private boolean selected = false; // whether that cell is drawn pushed in
 
         /**
-         * Repaint only the Squares that appear in changedList, then clear that list.
+         * Start with an empty board of the given size, until the game's first batch arrives.
          */
-        void updateImgs() {
-            for (int[] coords : game.getToPaint()) {
-                cells[coords[0]][coords[1]].repaint();
-            }
-            game.getToPaint().clear();
-        }
-
-        /**
-         * Remove all the squares from the array, to kill the listeners and free up memory.
-         */
-        void killAll() {
-            for (int r = 0; r < this.rows; r++) {
-                for (int c = 0; c < this.cols; c++) {
-                    cells[r][c].removeAll();
-                }
-            }
-        }
-    }
+        Grid(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            setTileSize();
+            this.setOpaque(true);
+            this.setBackground(background);
 
-    /**
-     * The graphic wrapper for the Cell class
-     */
-    class Square extends JComponent {
-        private final int row;
-        private final int col;
-        private boolean selected = false;
-
-        private Square(int row, int col) {
-            this.row = row;
-            this.col = col;
-            this.addMouseListener(new MouseAdapter() {
+            MouseAdapter mouseHandler = new MouseAdapter() {
                 @Override
                 public void mousePressed(MouseEvent e) {
-                    super.mousePressed(e);
-                    if (!game.isDead() && !game.getWon()) {
-                        if (SwingUtilities.isRightMouseButton(e)) {
-                            game.flag(row, col);
-                            flagger.updateFlags();
-                        } else if (SwingUtilities.isLeftMouseButton(e)) {
-                            if (game.getBoard()[row][col].getState() != Cell.State.REVEALED) {
-                                // Don't move until you release the mouse button
-                                selected = true;
-                            }
-                            faceButton.setIcon(loader.getFaceSprite(2));
-                        } else if (SwingUtilities.isMiddleMouseButton(e)) {
-                            faceButton.setIcon(loader.getFaceSprite(2));
+                    pressed = cellAt(e.getX(), e.getY());
+                    setHint(-1);
+                    if (pressed < 0 || status != Minesweeper.Status.PLAYING) {
+                        return;
+                    }
+                    if (SwingUtilities.isRightMouseButton(e)) {
+                        engine.flag(pressed / cols, pressed % cols);
+                    } else if (SwingUtilities.isLeftMouseButton(e)) {
+                        if (isCovered(pressed)) {
+                            // Don't move until you release the mouse button
+                            setSelected(true);
                         }
+                        faceButton.setIcon(loader.getFaceSprite(2));
+                    } else if (SwingUtilities.isMiddleMouseButton(e)) {
+                        faceButton.setIcon(loader.getFaceSprite(2));
                     }
-                    repaint();
                 }
 
                 @Override
                 public void mouseReleased(MouseEvent e) {
-                    super.mouseReleased(e);
-                    if (!game.isDead() && !game.getWon()) {
-                        faceButton.setIcon(loader.getFaceSprite(0));
-                        if (selected) {
-                            if (!clock.isStarted()) {
-                                clock.startTimer();
-                            }
-                            game.move(row, col, true);
-
-                            // last click bool for red bg bombs
-                            if (game.getBoard()[row][col].isMine()) {
-                                game.getPrevLastClicked().setLastClicked(false);
-                                game.getBoard()[row][col].setLastClicked(true);
-                                game.setLastClickedCell(game.getBoard()[row][col]);
-                            }
-
-                            grid.updateImgs();
-                            repaint();
-                            selected = false;
+                    if (pressed < 0 || status != Minesweeper.Status.PLAYING) {
+                        setSelected(false);
+                        pressed = -1;
+                        return;
+                    }
+                    int row = pressed / cols;
+                    int col = pressed % cols;
+                    faceButton.setIcon(loader.getFaceSprite(0));
+                    // The move is made on the game thread; what it changed comes back in a batch, see show()
+                    if (selected) {
+                        if (!clock.isStarted()) {
+                            clock.startTimer();
                         }
-                        endGameCheck();
-                        repaint();
+                        setSelected(false);
+                        engine.reveal(row, col);
+                    } else if (SwingUtilities.isMiddleMouseButton(e) && cellAt(e.getX(), e.getY()) == pressed) {
+                        // Only if released on the cell it was pressed on, like a reveal
+                        engine.chord(row, col);
                     }
+                    pressed = -1;
                 }
 
                 /**
-                 * When the mouse exits the Square, the Square is no longer
-                 *  considered 'selected', so make that boolean false and repaint.
+                 * When the mouse leaves the pressed cell, the cell is no longer
+                 *  considered 'selected', so make it pop back out.
                  */
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (selected && cellAt(e.getX(), e.getY()) != pressed) {
+                        setSelected(false);
+                    }
+                }
+
                 @Override
                 public void mouseExited(MouseEvent e) {
-                    super.mouseExited(e);
-                    selected = false;
-                    repaint();
+                    setSelected(false);
                 }
-            });
+
+                /**
+                 * Ctrl + wheel zooms; anything else is handed to the scroll pane.
+                 */
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    if (e.isControlDown()) {
+                        zoom(-e.getWheelRotation(), e.getPoint());
+                    } else {
+                        getParent().dispatchEvent(SwingUtilities.convertMouseEvent(Grid.this, e, getParent()));
+                    }
+                }
+            };
+            this.addMouseListener(mouseHandler);
+            this.addMouseMotionListener(mouseHandler);
+            this.addMouseWheelListener(mouseHandler);
+        }
+
+        private void setTileSize() {
+            tileWidth = Math.max(1, loader.getTileDimensions()[1] * ZOOM_PERCENTS[zoom] / 100);
+            tileHeight = Math.max(1, loader.getTileDimensions()[0] * ZOOM_PERCENTS[zoom] / 100);
+        }
+
+        /**
+         * Change the zoom level, keeping the cell under the anchor point in place.
+         * @param steps zoom levels to move by: positive zooms in, negative zooms out, 0 resets
+         * @param anchor point in this component's coordinates, or null for the center of the view
+         */
+        void zoom(int steps, Point anchor) {
+            int newZoom = steps == 0 ? DEFAULT_ZOOM
+                    : Math.max(0, Math.min(ZOOM_PERCENTS.length - 1, zoom + steps));
+            if (newZoom == zoom) {
+                return;
+            }
+            Rectangle view = getVisibleRect();
+            if (anchor == null) {
+                anchor = new Point(view.x + view.width / 2, view.y + view.height / 2);
+            }
+            double col = (double) anchor.x / tileWidth;
+            double row = (double) anchor.y / tileHeight;
+
+            zoom = newZoom;
+            setTileSize();
+            revalidate();
+            if (getParent() instanceof JViewport) {
+                JViewport viewport = (JViewport) getParent();
+                viewport.validate();
+                int x = (int) (col * tileWidth) - (anchor.x - view.x);
+                int y = (int) (row * tileHeight) - (anchor.y - view.y);
+                Dimension extent = viewport.getExtentSize();
+                Dimension size = getPreferredSize();
+                viewport.setViewPosition(new Point(Math.max(0, Math.min(x, size.width - extent.width)),
+                        Math.max(0, Math.min(y, size.height - extent.height))));
+            }
+            repaint();
+        }
+
+        /**
+         * @return index of the cell under the given point, or -1 if there is none
+         */
+        private int cellAt(int x, int y) {
+            if (x < 0 || y < 0 || x >= cols * tileWidth || y >= rows * tileHeight) {
+                return -1;
+            }
+            return (y / tileHeight) * cols + x / tileWidth;
+        }
+
+        /**
+         * @return where the cell is in the window's sprites, or -1 if it is outside the window
+         */
+        private int held(int r, int c) {
+            int wr = r - windowTop;
+            int wc = c - windowLeft;
+            if (sprites == null || wr < 0 || wr >= windowRows || wc < 0 || wc >= windowCols) {
+                return -1;
+            }
+            return wr * windowCols + wc;
+        }
+
+        /**
+         * @return whether the cell is hidden, flagged or marked, going by its sprite;
+         *          true if its sprite hasn't come yet
+         */
+        private boolean isCovered(int index) {
+            int held = held(index / cols, index % cols);
+            if (held < 0) {
+                return true;
+            }
+            int sprite = sprites[held];
+            return sprite == 0 || sprite == 2 || sprite == 3;
+        }
+
+        /**
+         * Ask the game thread for a window around the view if the view has left the last one
+         *  asked for. The window reaches half a view past the view on every side, so scrolling
+         *  only asks for one now and then.
+         */
+        void follow() {
+            Rectangle view = getVisibleRect();
+            if (view.isEmpty() || sprites == null) {
+                return;
+            }
+            int top = view.y / tileHeight;
+            int left = view.x / tileWidth;
+            int bottom = Math.min(rows - 1, (view.y + view.height - 1) / tileHeight);
+            int right = Math.min(cols - 1, (view.x + view.width - 1) / tileWidth);
+            if (top >= wantTop && left >= wantLeft && bottom <= wantBottom && right <= wantRight) {
+                return;
+            }
+            int rowMargin = (bottom - top + 2) / 2;
+            int colMargin = (right - left + 2) / 2;
+            wantTop = Math.max(0, top - rowMargin);
+            wantLeft = Math.max(0, left - colMargin);
+            wantBottom = Math.min(rows - 1, bottom + rowMargin);
+            wantRight = Math.min(cols - 1, right + colMargin);
+            engine.setWindow(wantTop, wantLeft, wantBottom, wantRight);
+        }
+
+        /**
+         * Take in a batch of changes and repaint the cells it changed, with a single request
+         *  covering their bounding rectangle. A fresh batch of another size switches the grid
+         *  to the new dimensions, keeping the zoom level; a batch for another window, which
+         *  covers all of it, replaces the sprites held.
+         * @return whether the grid changed size
+         */
+        boolean show(GameThread.Changes changes) {
+            boolean resized = changes.getRows() != rows || changes.getCols() != cols;
+            if (resized) {
+                rows = changes.getRows();
+                cols = changes.getCols();
+                pressed = -1;
+                hint = -1;
+                selected = false;
+                revalidate();
+            }
+            int top = changes.getWindowTop();
+            int left = changes.getWindowLeft();
+            int height = changes.getWindowBottom() - top + 1;
+            int width = changes.getWindowRight() - left + 1;
+            if (sprites == null || resized) {
+                wantTop = top;
+                wantLeft = left;
+                wantBottom = changes.getWindowBottom();
+                wantRight = changes.getWindowRight();
+            }
+            boolean moved = sprites == null || top != windowTop || left != windowLeft
+                    || height != windowRows || width != windowCols;
+            if (moved) {
+                if (sprites == null || sprites.length != height * width) {
+                    sprites = new byte[height * width];
+                }
+                windowTop = top;
+                windowLeft = left;
+                windowRows = height;
+                windowCols = width;
+            }
+
+            byte[] changed = changes.getSprites();
+            int[] cells = changes.getCells();
+            if (cells != null) {
+                for (int i = 0; i < cells.length; i++) {
+                    sprites[held(cells[i] / cols, cells[i] % cols)] = changed[i];
+                }
+            } else if (!changes.isEmpty()) {
+                int changedWidth = changes.getRight() - changes.getLeft() + 1;
+                for (int r = changes.getTop(); r <= changes.getBottom(); r++) {
+                    System.arraycopy(changed, (r - changes.getTop()) * changedWidth,
+                            sprites, held(r, changes.getLeft()), changedWidth);
+                }
+            }
+
+            // Tints can change anywhere, so they repaint everything
+            if (changes.getTint() != null || tint != null || changes.isFresh() || moved) {
+                tint = changes.getTint();
+                repaint();
+            } else if (!changes.isEmpty()) {
+                repaint(changes.getLeft() * tileWidth, changes.getTop() * tileHeight,
+                        (changes.getRight() - changes.getLeft() + 1) * tileWidth,
+                        (changes.getBottom() - changes.getTop() + 1) * tileHeight);
+            }
+            return resized;
+        }
+
+        void setHint(int hint) {
+            repaintCell(this.hint);
+            this.hint = hint;
+            repaintCell(hint);
+        }
+
+        private void setSelected(boolean selected) {
+            if (this.selected != selected) {
+                this.selected = selected;
+                repaintCell(pressed);
+            }
+        }
+
+        private void repaintCell(int index) {
+            if (index >= 0) {
+                repaint((index % cols) * tileWidth, (index / cols) * tileHeight, tileWidth, tileHeight);
+            }
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            Cell cell = game.getBoard()[row][col];
-            BufferedImage tileImg = cell.getImg();
-
-            // On death, if the cell wasn't actually a mine but it was flagged, draw a red X mine
-            if (game.isDead() && cell.getState() == Cell.State.FLAGGED && !cell.isMine()) {
-                tileImg = loader.getTileSprite(7);
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
             }
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+            // Only the tiles that intersect the clip
+            int firstRow = Math.max(0, clip.y / tileHeight);
+            int lastRow = Math.min(rows - 1, (clip.y + clip.height - 1) / tileHeight);
+            int firstCol = Math.max(0, clip.x / tileWidth);
+            int lastCol = Math.min(cols - 1, (clip.x + clip.width - 1) / tileWidth);
+
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstCol; c <= lastCol; c++) {
+                    int held = held(r, c);
+                    if (held < 0) {
+                        continue; // not come from the game thread yet
+                    }
+                    int index = r * cols + c;
+                    int sprite = sprites[held];
+
+                    // "Pushed in" sprites
+                    if (selected && index == pressed) {
+                        if (sprite == 3) {
+                            sprite = 4;
+                        } else if (sprite != 2) {
+                            sprite = 1;
+                        }
+                    }
+                    BufferedImage tileImg = loader.getTileSprite(sprite);
+                    g.drawImage(tileImg, c * tileWidth, r * tileHeight, tileWidth, tileHeight, this);
+
+                    // Hidden and marked cells are tinted red by how likely they are to be a mine
+                    if (tint != null && status == Minesweeper.Status.PLAYING
+                            && (sprites[held] == 0 || sprites[held] == 3)) {
+                        int alpha = tint[held] & 0xFF;
+                        if (alpha > 0) {
+                            g.setColor(tintColors[alpha]);
+                            g.fillRect(c * tileWidth, r * tileHeight, tileWidth, tileHeight);
+                        }
+                    }
 
-            // "Pushed in" sprites
-            if (selected) {
-                if (cell.getState() == Cell.State.MARKED) {
-                    tileImg = loader.getTileSprite(4);
-                } else if (cell.getState() != Cell.State.FLAGGED) {
-                    tileImg = loader.getTileSprite(1);
+                    if (index == hint) {
+                        g.setColor(hintColor);
+                        g.drawRect(c * tileWidth, r * tileHeight, tileWidth - 1, tileHeight - 1);
+                        g.drawRect(c * tileWidth + 1, r * tileHeight + 1, tileWidth - 3, tileHeight - 3);
+                    }
                 }
             }
-
-            g2.drawImage(tileImg, 0, 0, loader.getTileDimensions()[0],
-                    loader.getTileDimensions()[1], this);
         }
 
         @Override
         public Dimension getPreferredSize() {
-            return new Dimension(loader.getTileDimensions()[0],
-                    loader.getTileDimensions()[1]);
+            return new Dimension(cols * tileWidth, rows * tileHeight);
+        }
+
+        /**
+         * The view is as big as the board, but never bigger than most of the screen.
+         */
+        @Override
+        public Dimension getPreferredScrollableViewportSize() {
+            Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+            Dimension size = getPreferredSize();
+            return new Dimension(Math.min(size.width, screen.width - 60),
+                    Math.min(size.height, screen.height - 160));
+        }
+
+        @Override
+        public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.HORIZONTAL ? tileWidth : tileHeight;
+        }
+
+        @Override
+        public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+            return orientation == SwingConstants.HORIZONTAL ? visibleRect.width : visibleRect.height;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportWidth() {
+            return false;
+        }
+
+        @Override
+        public boolean getScrollableTracksViewportHeight() {
+            return false;
+        }
+    }
+
+    /**
+     * @return the mine colour with every alpha a tint can have, see {@link GameThread.Changes#getTint()}
+     */
+    private static Color[] tintColors() {
+        Color[] colors = new Color[161];
+        for (int alpha = 0; alpha < colors.length; alpha++) {
+            colors[alpha] = new Color(mineColor.getRed(), mineColor.getGreen(), mineColor.getBlue(), alpha);
         }
+        return colors;
     }
 
     public static void main(String[] args) {
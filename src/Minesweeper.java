@@ -1,121 +1,473 @@
-import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
 
 /**
  * Logic for Minesweeper
+ * <P> This is the headless engine: it has no dependency on AWT or Swing, so it can
+ *     be driven by MinesUI as well as by bots, tests and servers. </P>
+ * <P> Typical use: create a game with a size, mine count and (optionally) a seed,
+ *     then call {@link #reveal(int, int)} and {@link #flag(int, int)} and query the
+ *     board with {@link #getState(int, int)}, {@link #getValue(int, int)} and
+ *     {@link #getStatus()}. Instances are not thread-safe. </P>
  * @author huynhstin
  */
 
-class Minesweeper {
+public class Minesweeper {
+    public enum Status {
+        PLAYING, WON, LOST
+    }
+
+    /**
+     * Boards with more cells than this don't list their mines: they are placed in one
+     *  streaming pass (see {@link MinePlacer#stream}) and found by scanning the board
+     *  when needed, and the board isn't analyzed for 3BV. A list of a billion-cell
+     *  board's mines alone would take gigabytes.
+     */
+    static final int LARGE_BOARD_CELLS = 1 << 25;
+
+    /**
+     * Boards with fewer cells than this always flood fill on the calling thread, see
+     *  {@link #setParallelFill(ForkJoinPool)}: their openings are too small to be worth splitting.
+     */
+    static final int PARALLEL_FILL_CELLS = 1 << 20;
+
+    private static final int[] NO_MINES = new int[0];
+
     private int rows;
     private int cols;
     private int mines;
-    private int flagsLeft;
-    private int revealed = 0;
-    private final Cell[][] board;
-    private int[][] mineLocations;
+    private final Board board;
+    private final Neighbours neighbours;
+    private final Random random = new Random(); // reseeded for each board, see generate()
+    private final MinePlacer.Scratch placerScratch = new MinePlacer.Scratch();
+    private int[] mineLocations; // null: the mines aren't listed, see forEachMine()
+    private int flaggedMines; // counted while the mines are placed, see placeMine()
     private boolean dead = false;
     private boolean madeFirstMove = false;
     private boolean won = false;
-    private final Random randy = new Random();
-    private Cell lastClickedCell;
+    private final GameStats stats;
+    private long seed;
+    private MinePlacer.SafeZone safeZone = MinePlacer.SafeZone.CELL;
+    private NoGuessGenerator noGuess; // null: the board is whatever the seed gives
+    private int lastClicked = -1;
     private boolean markOption = false;
 
-    /* This list holds the coordinates of all the Cells that have changed
-     state, to avoid having to repaint all of the Cells on each click. */
-    private final ArrayList<int[]> toPaint = new ArrayList<>();
+    /* This holds the Cells that have changed state, to avoid having
+     to repaint all of the Cells on each click. */
+    private final DirtyRegion toPaint;
+
+    /* Every cell that has been flagged, so wrong flags can be shown on death
+     without scanning the board. May hold cells that were un-flagged since. */
+    private final IntList flagged = new IntList();
+
+    /* Work stack of indices for the flood fill in move(), kept between moves. */
+    private final IntList fillStack = new IntList();
+
+    private TiledFloodFill parallelFill; // null: openings are filled on the calling thread
+
+    /* Told about every cell that gets revealed, e.g. a Solver keeping its frontier up to date. */
+    private IntConsumer revealListener;
+
+    private GameRecorder recorder; // null: the game isn't recorded
 
-    Minesweeper(int rows, int cols, int mines) {
-        this.rows = rows;
-        this.cols = cols;
+    /**
+     * Start a new game with a random seed.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines number of mines, placed on the first move
+     */
+    public Minesweeper(int rows, int cols, int mines) {
+        this(rows, cols, mines, new Random().nextLong());
+    }
+
+    /**
+     * Start a new game.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines number of mines, placed on the first move
+     * @param seed seed for mine placement: the same seed and first click give the same board
+     * @throws IllegalArgumentException if the board is empty, too big for the heap
+     *          (see {@link ByteBoard#MAX_CELLS}) or can't hold the mines
+     */
+    public Minesweeper(int rows, int cols, int mines, long seed) {
+        this(new ByteBoard(rows, cols), mines, seed);
+    }
+
+    /**
+     * Create a game on the given empty board.
+     * @param board board to play on, e.g. a {@link ByteBoard} or a {@link CellBoard}
+     * @param mines number of mines to place on the first move
+     * @param seed seed for mine placement
+     */
+    Minesweeper(Board board, int mines, long seed) {
+        if (board.getRows() <= 0 || board.getCols() <= 0) {
+            throw new IllegalArgumentException("Board must have at least one row and column");
+        }
+        if (mines < 0 || mines >= (long) board.getRows() * board.getCols()) {
+            throw new IllegalArgumentException("Mines must be between 0 and the number of cells - 1");
+        }
+        this.rows = board.getRows();
+        this.cols = board.getCols();
         this.mines = mines;
-        board = new Cell[rows][cols];
-        mineLocations = new int[mines][2];
-        fillBoard();
-        flagsLeft = mines;
-        lastClickedCell = board[0][0]; // doesn't matter; will update on first click
+        this.board = board;
+        neighbours = new Neighbours(rows, cols);
+        this.seed = seed;
+        mineLocations = NO_MINES;
+        stats = new GameStats(rows * cols, mines);
+        toPaint = new DirtyRegion(cols);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Start a new game with the same size and mines and a random seed, see {@link #reset(long)}.
+     */
+    public void reset() {
+        reset(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Start a new game with the same size and mines, reusing this game's board and
+     *  buffers instead of allocating new ones. The mines are placed on the next first move. <br>
+     * The marks, safe zone and no-guess settings are kept. The reveal listener is dropped,
+     *  since e.g. a Solver following the old game knows nothing about the new one.
+     * @param seed seed for mine placement
+     */
+    public void reset(long seed) {
+        board.clear();
+        this.seed = seed;
+        stats.reset(mines);
+        mineLocations = NO_MINES;
+        dead = false;
+        won = false;
+        madeFirstMove = false;
+        lastClicked = -1;
+        flagged.clear();
+        fillStack.clear();
+        toPaint.clear();
+        revealListener = null;
+        if (recorder != null) {
+            recorder.game(this);
+        }
+    }
+
+    /**
+     * Log this game and every game it is reset to, see {@link GameRecorder}.
+     *  Setting the recorder the game already has does nothing.
+     * @param recorder recorder to log to, or null to stop recording
+     * @throws IllegalStateException if a new recorder is given after the first move,
+     *          since the game could then not be replayed from its start
+     */
+    public void setRecorder(GameRecorder recorder) {
+        if (recorder == this.recorder) {
+            return;
+        }
+        if (recorder != null && madeFirstMove) {
+            throw new IllegalStateException("Only a game that hasn't started can be recorded");
+        }
+        this.recorder = recorder;
+        if (recorder != null) {
+            recorder.game(this);
+        }
+    }
+
+    /**
+     * Change the seed the mines will be placed with. Only has an effect before the
+     *  first move; used to replay a board whose seed was picked by a {@link NoGuessGenerator}.
+     * @param seed seed for mine placement
+     */
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Choose which cells around the first click are kept free of mines.
+     * Only has an effect before the first move.
+     */
+    public void setSafeZone(MinePlacer.SafeZone safeZone) {
+        this.safeZone = safeZone;
+    }
+
+    /**
+     * Only place boards that can be solved without guessing, searching with the given generator.
+     * Only has an effect before the first move, and none on boards of more than
+     *  {@link #LARGE_BOARD_CELLS} cells. Best combined with {@link MinePlacer.SafeZone#OPENING}.
+     * @param generator generator to search with, or null for plain random boards
+     */
+    public void setNoGuess(NoGuessGenerator generator) {
+        this.noGuess = generator;
+    }
+
+    public MinePlacer.SafeZone getSafeZone() {
+        return safeZone;
+    }
+
+    /**
+     * @return whether the first move was made, which is when the mines are placed
+     */
+    public boolean isStarted() {
+        return madeFirstMove;
+    }
+
+    /**
+     * Put back a saved game, see {@link GameFile}. The board must be new and already hold
+     *  the saved cell states; the numbers and counters are worked out from them.
+     * @param mineLocations where the mines are, if the game had started
+     * @param started whether the first move had been made
+     * @param dead whether the game was lost
+     * @param won whether the game was won
+     * @param lastClicked the mine that lost the game, or -1
+     * @param clicks clicks made so far
+     * @param cleared clicks that took one off the 3BV so far
+     */
+    void restore(int[] mineLocations, boolean started, boolean dead, boolean won, int lastClicked,
+                 int clicks, int cleared) {
+        this.mineLocations = started ? mineLocations : NO_MINES;
+        this.madeFirstMove = started;
+        this.dead = dead;
+        this.won = won;
+        this.lastClicked = lastClicked;
+        for (int mineLocation : this.mineLocations) {
+            board.makeMine(mineLocation);
+            incrSurround(board.row(mineLocation), board.col(mineLocation));
+        }
+
+        flagged.clear();
+        int revealedCells = 0;
+        int flags = 0;
+        int correctFlags = 0;
+        for (int index = 0; index < rows * cols; index++) {
+            Cell.State state = board.getState(index);
+            if (state == Cell.State.REVEALED && !board.isMine(index)) {
+                revealedCells++;
+            } else if (state == Cell.State.FLAGGED) {
+                flags++;
+                flagged.add(index);
+                if (board.isMine(index)) {
+                    correctFlags++;
+                }
+            }
+        }
+        if (started) {
+            stats.placed(board, this.mineLocations.length, correctFlags);
+        }
+        stats.restored(revealedCells, flags, correctFlags, clicks, cleared);
+    }
+
+    /**
+     * Carry on a game whose board already holds its mines, numbers and cell states, such
+     *  as a {@link MappedBoard} reopened from its file, see {@link GameFile#openMapped}.
+     *  Nothing is read from the board, so this is instant however big it is; the counters
+     *  are taken as given.
+     * @param started whether the first move had been made
+     * @param dead whether the game was lost
+     * @param won whether the game was won
+     * @param lastClicked the mine that lost the game, or -1
+     * @param placedMines mines on the board
+     * @param revealed safe cells revealed
+     * @param flags flags on the board
+     * @param correctFlags flags on mines
+     * @param clicks clicks made so far
+     * @param cleared clicks that took one off the 3BV so far
+     */
+    void resume(boolean started, boolean dead, boolean won, int lastClicked, int placedMines,
+                int revealed, int flags, int correctFlags, int clicks, int cleared) {
+        this.mineLocations = started ? null : NO_MINES;
+        this.madeFirstMove = started;
+        this.dead = dead;
+        this.won = won;
+        this.lastClicked = lastClicked;
+        flagged.clear();
+        if (started) {
+            stats.placed(board, placedMines, correctFlags);
+        }
+        stats.restored(revealed, flags, correctFlags, clicks, cleared);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
     }
 
-    int getFlagsLeft() {
-        return flagsLeft;
+    public int getMines() {
+        return mines;
+    }
+
+    public int getFlagsLeft() {
+        return mines - stats.getFlags();
+    }
+
+    /**
+     * @return the counters of this game, updated as it is played
+     */
+    public GameStats getStats() {
+        return stats;
     }
 
     /**
      * Flag the cell located at the given coordinates. <br>
-     * Only flagCell if you have flags left, or if the cell you are trying to
-     *  flagCell is already flagged, meaning that you are toggling.
+     * Only flag if you have flags left, or if the cell you are trying to
+     *  flag is already flagged, meaning that you are toggling. <br>
+     * Cycles HIDDEN -> FLAGGED -> (MARKED, if marks are on) -> HIDDEN.
+     * Does nothing once the game is over or if the coordinates are off the board.
      * @param r row
      * @param c column
      */
-    void flag(int r, int c) {
-        if (flagsLeft > 0 || board[r][c].getState() == Cell.State.FLAGGED) {
-            flagsLeft += board[r][c].flagCell(markOption);
+    public void flag(int r, int c) {
+        if (dead || won || !inBound(r, c)) {
+            return;
+        }
+        int index = board.index(r, c);
+        switch (board.getState(index)) {
+            case HIDDEN:
+                if (getFlagsLeft() <= 0) {
+                    return;
+                }
+                board.setState(index, Cell.State.FLAGGED);
+                stats.flagged(board.isMine(index));
+                flagged.add(index);
+                break;
+            case FLAGGED:
+                board.setState(index, markOption ? Cell.State.MARKED : Cell.State.HIDDEN);
+                stats.unflagged(board.isMine(index));
+                break;
+            case MARKED:
+                board.setState(index, Cell.State.HIDDEN);
+                break;
+            default:
+                return;
+        }
+        stats.clicked();
+        toPaint.add(index);
+        if (recorder != null) {
+            recorder.event(GameRecorder.FLAG, index);
         }
     }
 
-    Cell getPrevLastClicked() {
-        return lastClickedCell;
+    /**
+     * @return index of the mine that was clicked to lose the game, or -1
+     */
+    int getLastClicked() {
+        return lastClicked;
     }
 
-    void setLastClickedCell(Cell cell) {
-        lastClickedCell = cell;
+    /**
+     * @param r row
+     * @param c col
+     * @return the state of the cell
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public Cell.State getState(int r, int c) {
+        checkBounds(r, c);
+        return board.getState(board.index(r, c));
     }
 
     /**
-     * Fills the board with new cells, and then generates all the mines.
+     * Only revealed cells give their value away, so a bot can't peek at the mines.
+     * @param r row
+     * @param c col
+     * @return number of mines around a revealed cell, or -1 if the cell isn't
+     *          revealed or is a mine
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
      */
-    private void fillBoard() {
-        for (int r = 0; r < this.rows; r++) {
-            for (int c = 0; c < this.cols; c++) {
-                board[r][c] = new Cell();
-            }
+    public int getValue(int r, int c) {
+        checkBounds(r, c);
+        int index = board.index(r, c);
+        return board.getState(index) == Cell.State.REVEALED ? board.getValue(index) : -1;
+    }
+
+    public Status getStatus() {
+        if (dead) {
+            return Status.LOST;
+        }
+        return won ? Status.WON : Status.PLAYING;
+    }
+
+    private void checkBounds(int r, int c) {
+        if (!inBound(r, c)) {
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ") is off the " + rows + "x" + cols + " board");
         }
     }
 
     /**
-     * Generates random coordinates to place mines in, and saves the locations
-     *  of those mines to the mineLocations array.
-     * @param num how many mines to generate.
-     * @param ignore the coordinates of the cell to not generate a mine at
+     * Places the mines, keeping them out of the safe zone around the first click,
+     *  and saves the locations of those mines to the mineLocations array.
+     *  Large boards are placed in one streaming pass and don't list their mines.
+     * @param r row of the first click
+     * @param c col of the first click
      */
-    private void generate(int num, int[] ignore) {
-        int minesLeft = num;
-        while (minesLeft > 0) {
-            int r = randy.nextInt(rows);
-            int c = randy.nextInt(cols);
-            if (!board[r][c].isMine() && (r != ignore[0] && c != ignore[1])) {
-                board[r][c].makeMine();
-                incrSurround(r, c);
-                mineLocations[minesLeft - 1] = new int[]{r, c};
-                minesLeft--;
+    private void generate(int r, int c) {
+        flaggedMines = 0;
+        int placedMines;
+        long layoutSeed = seed;
+        if (rows * cols > LARGE_BOARD_CELLS) {
+            random.setSeed(layoutSeed);
+            mineLocations = null;
+            placedMines = MinePlacer.stream(rows, cols, mines, r, c, safeZone, random, this::placeMine);
+        } else {
+            if (noGuess != null) {
+                layoutSeed = noGuess.find(rows, cols, mines, r, c, safeZone, seed).getSeed();
+            }
+            random.setSeed(layoutSeed);
+            mineLocations = MinePlacer.place(rows, cols, mines, r, c, safeZone, random, placerScratch);
+            for (int mineLocation : mineLocations) {
+                placeMine(mineLocation);
             }
+            placedMines = mineLocations.length;
+        }
+        stats.placed(board, placedMines, flaggedMines);
+        if (recorder != null) {
+            recorder.placed(layoutSeed, safeZone);
         }
     }
 
     /**
-     * Increment all the cells around a given coordinate
-     * @param r row
-     * @param c col
+     * Put a mine on the board and number its neighbours.
+     * @param index index of the cell
      */
-    private void incrSurround(int r, int c) {
-        incrCell(r + 1, c);
-        incrCell(r - 1, c);
-        incrCell(r, c + 1);
-        incrCell(r, c - 1);
-        incrCell(r + 1, c + 1);
-        incrCell(r - 1, c - 1);
-        incrCell(r + 1, c - 1);
-        incrCell(r - 1, c + 1);
+    private void placeMine(int index) {
+        board.makeMine(index);
+        incrSurround(board.row(index), board.col(index));
+        // Flags can be placed before the first move, when there are no mines yet
+        if (board.getState(index) == Cell.State.FLAGGED) {
+            flaggedMines++;
+        }
+    }
+
+    /**
+     * Call the action with every mine on the board, from the list if there is one,
+     *  otherwise by scanning the board.
+     */
+    private void forEachMine(IntConsumer action) {
+        if (mineLocations != null) {
+            for (int mineLocation : mineLocations) {
+                action.accept(mineLocation);
+            }
+            return;
+        }
+        for (int index = 0; index < rows * cols; index++) {
+            if (board.isMine(index)) {
+                action.accept(index);
+            }
+        }
     }
 
     /**
-     * Increment the cell at the given coordinate
+     * Increment all the cells around a given coordinate
      * @param r row
      * @param c col
      */
-    private void incrCell(int r, int c) {
-        if (inBound(r, c)) {
-            board[r][c].increase();
+    private void incrSurround(int r, int c) {
+        int index = board.index(r, c);
+        for (int offset : neighbours.of(r, c)) {
+            board.increase(index + offset);
         }
     }
 
@@ -123,11 +475,38 @@ class Minesweeper {
         return r >= 0 && r < this.rows && c >= 0 && c < this.cols;
     }
 
-    Cell[][] getBoard() {
+    Board getBoard() {
         return board;
     }
 
-    boolean isDead() {
+    /**
+     * @return the neighbour tables for this game's board
+     */
+    Neighbours getNeighbours() {
+        return neighbours;
+    }
+
+    /**
+     * Set the listener that is given the index of every non-mine cell as it is revealed,
+     *  replacing any previous one.
+     * @param revealListener listener, or null for none
+     */
+    void setRevealListener(IntConsumer revealListener) {
+        this.revealListener = revealListener;
+    }
+
+    /**
+     * Fill openings on the given pool from now on, split by board tiles, see {@link TiledFloodFill}.
+     *  The move still returns only once the whole opening is revealed. Kept across resets;
+     *  ignored for boards under {@link #PARALLEL_FILL_CELLS} cells.
+     * @param pool pool to fill on, or null to fill on the calling thread
+     */
+    void setParallelFill(ForkJoinPool pool) {
+        parallelFill = pool != null && (long) rows * cols >= PARALLEL_FILL_CELLS
+                ? new TiledFloodFill(board, neighbours, pool) : null;
+    }
+
+    public boolean isDead() {
         return this.dead;
     }
 
@@ -136,96 +515,283 @@ class Minesweeper {
     }
 
     /**
-     * Make a move
+     * Make a move. <br>
+     * If the cell is empty, all of the cells connected to it are revealed as well,
+     *  stopping at numbered cells.
      * @param r row
      * @param c col
-     * @param checkMine whether or not to check for mines (for recursive calls)
-     */
-    void move(int r, int c, boolean checkMine) {
-        if (!dead && !won) {
-            // only move if if it's within bound (for recursive calls), and if it's currently hidden or marked
-            if (inBound(r, c) && (board[r][c].getState() == Cell.State.HIDDEN ||
-                                       board[r][c].getState() == Cell.State.MARKED)) {
-
-                // Generate the board on the first move, avoiding the first cell clicked
-                if (!madeFirstMove) {
-                    madeFirstMove = true;
-                    generate(this.mines, new int[] {r, c});
-                }
+     */
+    void move(int r, int c) {
+        if (dead || won) {
+            return;
+        }
 
-                if (!board[r][c].isMine()) { // reveal it, since it was hidden. do not reveal mines
-                    board[r][c].reveal();
-                    revealed++;
-                    toPaint.add(new int[]{r, c});
-                }
+        // only move if it's within bound, and if it's currently hidden or marked
+        if (!inBound(r, c) || !isCovered(board.index(r, c))) {
+            return;
+        }
 
-                if (board[r][c].isMine() && checkMine) { // if you hit a bomb, and we're looking for bombs, you dead.
-                    dead = true;
-                    revealOnDead();
-                } else if (board[r][c].getValue() > 0 || board[r][c].isMine()) { // once we hit a number, get out
-                    return;
-                } else { // reveal all the ones around it
-                    move(r + 1, c, false);
-                    move(r - 1, c, false);
-                    move(r, c + 1, false);
-                    move(r, c - 1, false);
-                    move(r + 1, c + 1, false);
-                    move(r - 1, c - 1, false);
-                    move(r + 1, c - 1, false);
-                    move(r - 1, c + 1, false);
+        // Generate the board on the first move, avoiding the first cell clicked
+        if (!madeFirstMove) {
+            madeFirstMove = true;
+            generate(r, c);
+        }
+
+        stats.clicked();
+        if (recorder != null) {
+            recorder.event(GameRecorder.REVEAL, board.index(r, c));
+        }
+        open(board.index(r, c));
+        if (dead && recorder != null) {
+            recorder.ended(this);
+        }
+    }
+
+    /**
+     * Chord: if a revealed number has exactly that many flags around it,
+     *  reveal all of its other neighbours at once (cascading through empty cells),
+     *  as a middle click does. <br>
+     * If one of the unflagged neighbours is a mine, the game is lost.
+     * All of the changed cells end up in the same toPaint batch.
+     * @param r row
+     * @param c col
+     * @return status of the game after the chord
+     */
+    public Status chord(int r, int c) {
+        if (dead || won || !inBound(r, c)) {
+            return getStatus();
+        }
+        int index = board.index(r, c);
+        int value = board.getValue(index);
+        if (board.getState(index) != Cell.State.REVEALED || value <= 0) {
+            return getStatus();
+        }
+
+        int[] around = neighbours.of(r, c);
+        int flags = 0;
+        for (int offset : around) {
+            if (board.getState(index + offset) == Cell.State.FLAGGED) {
+                flags++;
+            }
+        }
+        if (flags != value) {
+            return getStatus();
+        }
+        stats.clicked();
+        if (recorder != null) {
+            recorder.event(GameRecorder.CHORD, index);
+        }
+
+        for (int offset : around) {
+            if (isCovered(index + offset)) {
+                open(index + offset);
+            }
+        }
+        // The other neighbours are still opened after a mine, so the loss is logged once they are
+        if (dead && recorder != null) {
+            recorder.ended(this);
+        }
+        checkWin();
+        return getStatus();
+    }
+
+    /**
+     * Open a covered cell: lose if it's a mine, otherwise reveal it
+     *  and everything connected to it if it's empty.
+     * @param index index of a hidden or marked cell
+     */
+    private void open(int index) {
+        if (board.isMine(index)) { // if you hit a bomb, you dead.
+            if (!dead) {
+                dead = true;
+                lastClicked = index; // for the red bg bomb
+                revealOnDead();
+            }
+            return;
+        }
+
+        if (!isCovered(index)) { // already revealed by an earlier cascade
+            return;
+        }
+        revealCell(index);
+        if (board.getValue(index) == 0) {
+            // A zero with no revealed zero next to it starts an opening nobody opened yet
+            if (!hasRevealedEmptyNeighbour(index)) {
+                stats.cleared();
+            }
+            floodFill(index);
+        } else if (!hasEmptyNeighbour(index)) {
+            stats.cleared();
+        }
+    }
+
+    /**
+     * Reveal the cell at the given coordinates, the same as clicking it,
+     *  and then check whether that won the game.
+     * @param r row
+     * @param c col
+     * @return status of the game after the move
+     */
+    public Status reveal(int r, int c) {
+        move(r, c);
+        checkWin();
+        return getStatus();
+    }
+
+    /**
+     * Reveal every cell connected to the given empty cell, stopping at numbered cells. <br>
+     * Uses an explicit stack of indices instead of recursion so that large empty
+     *  regions can't overflow the thread stack. A cell is revealed as it is pushed,
+     *  so each cell goes on the stack at most once.
+     * @param start index of an empty, already revealed cell
+     */
+    private void floodFill(int start) {
+        if (parallelFill != null) {
+            stats.revealed(parallelFill.fill(start, revealListener, toPaint));
+            return;
+        }
+        fillStack.clear();
+        fillStack.add(start);
+        while (!fillStack.isEmpty()) {
+            int index = fillStack.pop();
+            for (int offset : neighbours.of(index)) {
+                int neighbour = index + offset;
+                if (isCovered(neighbour) && !board.isMine(neighbour)) {
+                    revealCell(neighbour);
+                    if (board.getValue(neighbour) == 0) {
+                        fillStack.add(neighbour);
+                    }
                 }
             }
         }
     }
 
-    ArrayList<int[]> getToPaint() {
+    /**
+     * Reveal a single non-mine cell and queue it to be repainted.
+     * @param index index of the cell
+     */
+    private void revealCell(int index) {
+        board.setState(index, Cell.State.REVEALED);
+        stats.revealed();
+        toPaint.add(index);
+        if (revealListener != null) {
+            revealListener.accept(index);
+        }
+    }
+
+    /**
+     * @return whether a neighbour of the cell is an empty (0) cell
+     */
+    private boolean hasEmptyNeighbour(int index) {
+        return findEmptyNeighbour(index, false);
+    }
+
+    /**
+     * @return whether a neighbour of the cell is an empty cell that is already revealed
+     */
+    private boolean hasRevealedEmptyNeighbour(int index) {
+        return findEmptyNeighbour(index, true);
+    }
+
+    private boolean findEmptyNeighbour(int index, boolean revealedOnly) {
+        for (int offset : neighbours.of(index)) {
+            int neighbour = index + offset;
+            if (board.getValue(neighbour) == 0
+                    && (!revealedOnly || board.getState(neighbour) == Cell.State.REVEALED)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the cell can still be revealed (it is hidden or marked)
+     */
+    private boolean isCovered(int index) {
+        Cell.State state = board.getState(index);
+        return state == Cell.State.HIDDEN || state == Cell.State.MARKED;
+    }
+
+    /**
+     * @return the cells that changed since the region was last cleared
+     */
+    DirtyRegion getToPaint() {
         return toPaint;
     }
 
     /**
      * Checks to see if player won:
-     * <P> Checks to see if the number of revealed tiles is
-     *    equal to the number of slots minus the number of mines,
-     *     implying that the player has revealed everything but the mines
-     *     and has therefore won. </P>
+     * <P> Checks whether every cell that isn't a mine has been revealed, which the
+     *     stats keep count of, so this is constant time however big the board is. </P>
      * <P> If this is true, then the method returns true and
      *     auto-flags all the mines, and adds those mines to the toPaint list. </P>
      * @return won or not
      */
     boolean checkWin() {
-        if (revealed == (rows * cols) - mines) {
+        if (!won && madeFirstMove && stats.getSafeLeft() == 0) {
             // Auto-flag all the mines
-            for (int[] mineLocation : mineLocations) {
-                board[mineLocation[0]][mineLocation[1]].setState(Cell.State.FLAGGED);
-                flagsLeft--;
-                toPaint.add(new int[]{mineLocation[0], mineLocation[1]});
-            }
+            forEachMine(mineLocation -> {
+                if (board.getState(mineLocation) != Cell.State.FLAGGED) {
+                    board.setState(mineLocation, Cell.State.FLAGGED);
+                    stats.flagged(true);
+                }
+                toPaint.add(mineLocation);
+            });
             won = true;
+            if (recorder != null) {
+                recorder.ended(this);
+            }
         }
         return won;
     }
 
-    boolean getWon() {
+    public boolean getWon() {
         return won;
     }
 
     /**
-     * When game is over (dead is true), reveal all the mines
+     * When game is over (dead is true), reveal all the mines. <br>
+     * Flagged mines stay flagged. Wrongly flagged cells are queued to be
+     *  repainted as well, since they are drawn differently once the game is lost.
      */
     private void revealOnDead() {
         if (dead) {
-            for (int[] mineLocation : mineLocations) {
-                Cell cell = board[mineLocation[0]][mineLocation[1]];
-                cell.reveal();
+            if (mineLocations == null) {
+                // The board has to be scanned for the mines anyway, so find the wrong flags on the way
+                for (int index = 0; index < rows * cols; index++) {
+                    boolean flaggedCell = board.getState(index) == Cell.State.FLAGGED;
+                    if (board.isMine(index) && !flaggedCell) {
+                        board.setState(index, Cell.State.REVEALED);
+                        toPaint.add(index);
+                    } else if (!board.isMine(index) && flaggedCell) {
+                        toPaint.add(index);
+                    }
+                }
+                return;
+            }
+            for (int mineLocation : mineLocations) {
+                if (board.getState(mineLocation) != Cell.State.FLAGGED) {
+                    board.setState(mineLocation, Cell.State.REVEALED);
+                    toPaint.add(mineLocation);
+                }
+            }
+            for (int i = 0; i < flagged.size(); i++) {
+                int index = flagged.get(i);
+                if (board.getState(index) == Cell.State.FLAGGED && !board.isMine(index)) {
+                    toPaint.add(index);
+                }
             }
         }
     }
 
-    void setMarkOption(boolean markOption) {
+    public void setMarkOption(boolean markOption) {
+        if (recorder != null && markOption != this.markOption) {
+            recorder.marks(markOption);
+        }
         this.markOption = markOption;
     }
 
-    boolean getMarkOption() {
+    public boolean getMarkOption() {
         return markOption;
     }
 }
\ No newline at end of file
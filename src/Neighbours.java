@@ -0,0 +1,86 @@
+/**
+ * Neighbour offsets over linear indices, worked out once per board size, so that the up to
+ *  eight neighbours of a cell can be visited without checking each of them against the edges. <br>
+ * A cell is classed by whether it is on the first row, the last row, both (on a one-row board)
+ *  or neither, and the same for its column. Each of the 16 classes has a table of the offsets
+ *  that stay on the board, so a loop over a cell's neighbours is {@code index + offset} for every
+ *  offset in its table, with no test per neighbour. Almost every cell is away from the edges,
+ *  so finding the class is well predicted too.
+ * <P> The offsets go row by row, top left to bottom right, skipping the cell itself; the
+ *     direction tables give the row and column steps of each offset in the same order. </P>
+ * @author huynhstin
+ */
+
+final class Neighbours {
+    // Row and column steps of the 8 directions, row by row
+    static final int[] DR = {-1, -1, -1, 0, 0, 1, 1, 1};
+    static final int[] DC = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    private static final int FIRST = 1;
+    private static final int LAST = 2;
+
+    private final int rows;
+    private final int cols;
+    private final int[][] offsets = new int[16][];
+    private final int[][] directions = new int[16][];
+
+    /**
+     * @param rows rows of the board
+     * @param cols cols of the board
+     */
+    Neighbours(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int[] buffer = new int[8];
+        for (int edges = 0; edges < 16; edges++) {
+            int rowEdge = edges >> 2;
+            int colEdge = edges & 3;
+            int count = 0;
+            for (int k = 0; k < 8; k++) {
+                boolean off = (DR[k] < 0 && (rowEdge & FIRST) != 0) || (DR[k] > 0 && (rowEdge & LAST) != 0)
+                        || (DC[k] < 0 && (colEdge & FIRST) != 0) || (DC[k] > 0 && (colEdge & LAST) != 0);
+                if (!off) {
+                    buffer[count++] = k;
+                }
+            }
+            directions[edges] = new int[count];
+            offsets[edges] = new int[count];
+            for (int i = 0; i < count; i++) {
+                directions[edges][i] = buffer[i];
+                offsets[edges][i] = DR[buffer[i]] * cols + DC[buffer[i]];
+            }
+        }
+    }
+
+    /**
+     * @return offsets to add to the cell's index to get each of its neighbours;
+     *          shared, not to be written to
+     */
+    int[] of(int r, int c) {
+        return offsets[edges(r, c)];
+    }
+
+    /**
+     * @return the same, for the cell with the given index
+     */
+    int[] of(int index) {
+        int r = index / cols;
+        return offsets[edges(r, index - r * cols)];
+    }
+
+    /**
+     * @return direction (index into {@link #DR} and {@link #DC}) of each of the cell's
+     *          neighbours, in the order of {@link #of(int, int)}; shared, not to be written to
+     */
+    int[] directionsOf(int r, int c) {
+        return directions[edges(r, c)];
+    }
+
+    private int edges(int r, int c) {
+        return edge(r, rows) << 2 | edge(c, cols);
+    }
+
+    private static int edge(int i, int n) {
+        return (i == 0 ? FIRST : 0) | (i == n - 1 ? LAST : 0);
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches for boards that can be solved from the first click without guessing. <br>
+ * Candidate boards come from seeds derived from the game's seed. Each one is played
+ *  on a headless game by the {@link Solver}; the first candidate the solver wins is used.
+ * <P> Candidates are checked in parallel by a pool of worker threads. Workers take attempt
+ *     numbers in order and stop once a lower attempt has been solved, so the board picked
+ *     is the lowest solvable attempt no matter how many threads ran: the same seed and
+ *     first click still give the same board. </P>
+ * <P> The search gives up after a time budget (checked between candidates); the game
+ *     then gets the ordinary random board. </P>
+ * <P> Boards can also be picked by difficulty, see {@link #setBbbvRange(int, int)}: candidates
+ *     whose 3BV is out of range are dropped before the solver plays them. </P>
+ * @author huynhstin
+ */
+
+public final class NoGuessGenerator {
+    // Boards bigger than this are checked by fewer threads, so the candidates fit in memory
+    private static final long MAX_PARALLEL_CELLS = 1 << 22;
+
+    private final int threads;
+    private final long budgetNanos;
+    private final ExecutorService workers;
+    private volatile int minBbbv = 0;
+    private volatile int maxBbbv = Integer.MAX_VALUE;
+    private final Map<String, Statistics> statistics = new TreeMap<>();
+
+    /**
+     * A generator using every core and a two second budget.
+     */
+    public NoGuessGenerator() {
+        this(Runtime.getRuntime().availableProcessors(), 2000);
+    }
+
+    /**
+     * @param threads worker threads to check candidates on
+     * @param budgetMillis how long to search for one board before giving up
+     */
+    public NoGuessGenerator(int threads, long budgetMillis) {
+        if (threads <= 0 || budgetMillis < 0) {
+            throw new IllegalArgumentException("Need at least one thread and a non-negative budget");
+        }
+        this.threads = threads;
+        this.budgetNanos = budgetMillis * 1_000_000;
+        this.workers = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "no-guess");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Only accept boards whose 3BV is in the given range, e.g. to play harder boards.
+     * @param min lowest 3BV, inclusive
+     * @param max highest 3BV, inclusive
+     */
+    public void setBbbvRange(int min, int max) {
+        if (min > max) {
+            throw new IllegalArgumentException("3BV range " + min + "-" + max + " is empty");
+        }
+        minBbbv = min;
+        maxBbbv = max;
+    }
+
+    /**
+     * Find a seed whose board can be solved without guessing.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines number of mines
+     * @param safeRow row of the first click
+     * @param safeCol col of the first click
+     * @param zone safe zone around the first click; boards are rarely solvable without an opening
+     * @param seed seed of the game; attempt 0 is this seed itself
+     * @return the seed to place the mines with, and how the search went
+     */
+    public Result find(int rows, int cols, int mines, int safeRow, int safeCol,
+                       MinePlacer.SafeZone zone, long seed) {
+        long start = System.nanoTime();
+        AtomicLong nextAttempt = new AtomicLong();
+        AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong checked = new AtomicLong();
+        int min = minBbbv;
+        int max = maxBbbv;
+
+        Callable<Void> worker = () -> {
+            while (System.nanoTime() - start < budgetNanos) {
+                long attempt = nextAttempt.getAndIncrement();
+                if (attempt >= best.get()) {
+                    break;
+                }
+                checked.incrementAndGet();
+                if (isAcceptable(rows, cols, mines, safeRow, safeCol, zone, candidateSeed(seed, attempt), min, max)) {
+                    best.accumulateAndGet(attempt, Math::min);
+                }
+            }
+            return null;
+        };
+        long cells = (long) rows * cols;
+        int parallelism = (int) Math.max(1, Math.min(threads, MAX_PARALLEL_CELLS / cells));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            tasks.add(worker);
+        }
+        try {
+            workers.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long nanos = System.nanoTime() - start;
+        boolean solved = best.get() != Long.MAX_VALUE;
+        Result result = solved
+                ? new Result(candidateSeed(seed, best.get()), best.get() + 1, checked.get(), nanos, true)
+                : new Result(seed, checked.get(), checked.get(), nanos, false);
+        synchronized (statistics) {
+            String key = rows + "x" + cols + "x" + mines;
+            Statistics forSize = statistics.get(key);
+            if (forSize == null) {
+                forSize = new Statistics();
+                statistics.put(key, forSize);
+            }
+            forSize.record(result);
+        }
+        return result;
+    }
+
+    /**
+     * Check the 3BV of a candidate board, then play it with the solver.
+     * @return whether the 3BV is in range and the solver wins it without guessing
+     */
+    static boolean isAcceptable(int rows, int cols, int mines, int safeRow, int safeCol,
+                                MinePlacer.SafeZone zone, long seed, int minBbbv, int maxBbbv) {
+        Minesweeper game = new Minesweeper(rows, cols, mines, seed);
+        game.setSafeZone(zone);
+        game.reveal(safeRow, safeCol);
+        int bbbv = game.getStats().getBbbv();
+        if (bbbv < minBbbv || bbbv > maxBbbv) {
+            return false;
+        }
+        return new Solver(game).play() == Minesweeper.Status.WON;
+    }
+
+    /**
+     * Seed of a candidate: the game's own seed first, then well mixed seeds derived from it.
+     */
+    static long candidateSeed(long seed, long attempt) {
+        if (attempt == 0) {
+            return seed;
+        }
+        // SplitMix64 finalizer
+        long z = seed + attempt * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return a snapshot of the statistics so far, by board size ("rows x cols x mines")
+     */
+    public Map<String, Statistics> getStatistics() {
+        synchronized (statistics) {
+            Map<String, Statistics> copy = new TreeMap<>();
+            for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().copy());
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Stop the worker threads. The generator can't be used afterwards.
+     */
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Outcome of one search.
+     */
+    public static final class Result {
+        private final long seed;
+        private final long attempts;
+        private final long checked;
+        private final long nanos;
+        private final boolean solvable;
+
+        private Result(long seed, long attempts, long checked, long nanos, boolean solvable) {
+            this.seed = seed;
+            this.attempts = attempts;
+            this.checked = checked;
+            this.nanos = nanos;
+            this.solvable = solvable;
+        }
+
+        /**
+         * @return seed to place the mines with
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return candidates up to and including the one picked (all of them if none was)
+         */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return candidates the workers actually played, including ones past the pick
+         */
+        public long getChecked() {
+            return checked;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return whether a solvable board was found within the budget
+         */
+        public boolean isSolvable() {
+            return solvable;
+        }
+    }
+
+    /**
+     * Running totals for one board size.
+     */
+    public static final class Statistics {
+        private long boards;
+        private long solved;
+        private long attempts;
+        private long checked;
+        private long nanos;
+
+        private void record(Result result) {
+            boards++;
+            solved += result.isSolvable() ? 1 : 0;
+            attempts += result.getAttempts();
+            checked += result.getChecked();
+            nanos += result.getNanos();
+        }
+
+        private Statistics copy() {
+            Statistics copy = new Statistics();
+            copy.boards = boards;
+            copy.solved = solved;
+            copy.attempts = attempts;
+            copy.checked = checked;
+            copy.nanos = nanos;
+            return copy;
+        }
+
+        public long getBoards() {
+            return boards;
+        }
+
+        /**
+         * @return boards for which a solvable candidate was found in time
+         */
+        public long getSolved() {
+            return solved;
+        }
+
+        public double getAttemptsPerBoard() {
+            return boards == 0 ? 0 : (double) attempts / boards;
+        }
+
+        public double getCheckedPerBoard() {
+            return boards == 0 ? 0 : (double) checked / boards;
+        }
+
+        public double getMillisPerBoard() {
+            return boards == 0 ? 0 : nanos / 1e6 / boards;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d boards, %d solvable, %.1f attempts (%.1f checked) and %.2f ms per board",
+                    boards, solved, getAttemptsPerBoard(), getCheckedPerBoard(), getMillisPerBoard());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Board that packs each cell into a single byte:
+ * <P> bits 0-1: state (ordinal of {@link Cell.State}) <br>
+ *     bits 2-5: number of adjacent mines (0-8) <br>
+ *     bit 6: mine </P>
+ * Subclasses only decide where the bytes live, see {@link ByteBoard} and {@link MappedBoard}.
+ * @author huynhstin
+ */
+
+abstract class PackedBoard implements Board {
+    static final int STATE_MASK = 0x03;
+    private static final int VALUE_SHIFT = 2;
+    private static final int VALUE_MASK = 0x0F << VALUE_SHIFT;
+    private static final int MINE_BIT = 0x40;
+    private static final Cell.State[] STATES = Cell.State.values();
+
+    private final int rows;
+    private final int cols;
+
+    PackedBoard(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * @return the packed byte of a cell
+     */
+    abstract byte get(int index);
+
+    abstract void set(int index, byte cell);
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getCols() {
+        return cols;
+    }
+
+    @Override
+    public Cell.State getState(int index) {
+        return STATES[get(index) & STATE_MASK];
+    }
+
+    @Override
+    public void setState(int index, Cell.State state) {
+        set(index, (byte) ((get(index) & ~STATE_MASK) | state.ordinal()));
+    }
+
+    @Override
+    public boolean isMine(int index) {
+        return (get(index) & MINE_BIT) != 0;
+    }
+
+    @Override
+    public int getValue(int index) {
+        int cell = get(index);
+        return (cell & MINE_BIT) != 0 ? -1 : (cell & VALUE_MASK) >> VALUE_SHIFT;
+    }
+
+    @Override
+    public void makeMine(int index) {
+        set(index, (byte) ((get(index) & STATE_MASK) | MINE_BIT));
+    }
+
+    @Override
+    public void increase(int index) {
+        int cell = get(index);
+        if ((cell & MINE_BIT) == 0) {
+            set(index, (byte) (cell + (1 << VALUE_SHIFT)));
+        }
+    }
+}
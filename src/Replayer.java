@@ -0,0 +1,363 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Plays back logs written by a {@link GameRecorder} on headless games, as fast as the CPU
+ *  allows, and checks that each finished game ends the way it did when it was recorded. <br>
+ * Usage: {@code java -cp target/classes Replayer [-v] [-t threads] log-or-directory...}
+ * <P> -v print a line per game <br>
+ *     -t threads to replay files on (default one per core); a directory stands for
+ *        every file in it </P>
+ * <P> The exit code is 1 if a game ended differently, so a folder of recorded games
+ *     works as a regression suite for the engine. </P>
+ * @author huynhstin
+ */
+
+public final class Replayer {
+    private static final String USAGE = "Usage: Replayer [-v] [-t threads] log-or-directory...";
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_RECORD_BYTES = 32;
+    private static final MinePlacer.SafeZone[] ZONES = MinePlacer.SafeZone.values();
+
+    /**
+     * How one recorded game played back.
+     */
+    public static final class Result {
+        private final int rows;
+        private final int cols;
+        private final int mines;
+        private final long seed;
+        private final Minesweeper.Status status;
+        private final int clicks;
+        private final int events;
+        private final long millis;
+        private final boolean finished;
+        private final boolean matches;
+
+        private Result(int rows, int cols, int mines, long seed, Minesweeper game, int events,
+                       long millis, int[] recorded) {
+            this.rows = rows;
+            this.cols = cols;
+            this.mines = mines;
+            this.seed = seed;
+            this.status = game.getStatus();
+            this.clicks = game.getStats().getClicks();
+            this.events = events;
+            this.millis = millis;
+            this.finished = recorded != null;
+            this.matches = recorded == null || (recorded[0] == status.ordinal()
+                    && recorded[1] == clicks && recorded[2] == game.getStats().getRevealed());
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public int getMines() {
+            return mines;
+        }
+
+        /**
+         * @return seed the game was started with
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return status of the game after playing back its log
+         */
+        public Minesweeper.Status getStatus() {
+            return status;
+        }
+
+        public int getClicks() {
+            return clicks;
+        }
+
+        /**
+         * @return operations played back
+         */
+        public int getEvents() {
+            return events;
+        }
+
+        /**
+         * @return milliseconds from the start of the game to its last event, as recorded
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return whether the game was won or lost when it was recorded, rather than left unfinished
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @return whether a finished game ended with the same status, clicks and revealed cells
+         *          as when it was recorded; unfinished games always match
+         */
+        public boolean matches() {
+            return matches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dx%d/%d seed %d: %s in %d clicks, %.3f s%s", rows, cols, mines, seed,
+                    finished ? status : "unfinished", clicks, millis / 1000.0, matches ? "" : " MISMATCH");
+        }
+    }
+
+    private Replayer() {
+    }
+
+    /**
+     * Play back every game in a log, in order.
+     * @param log file written by a {@link GameRecorder}
+     * @param results given each game once it has been played back
+     * @throws IOException if the log can't be read or is corrupt
+     */
+    public static void replay(Path log, Consumer<Result> results) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            buffer.limit(0);
+            if (!fill(channel, buffer) || buffer.remaining() < 6 || buffer.getInt() != GameRecorder.MAGIC) {
+                throw new IOException(log + " is not a game log");
+            }
+            short version = buffer.getShort();
+            if (version != GameRecorder.VERSION) {
+                throw new IOException(log + " was recorded in version " + version + ", which this version can't read");
+            }
+
+            Minesweeper game = null;
+            int rows = 0;
+            int cols = 0;
+            int mines = 0;
+            long seed = 0;
+            int events = 0;
+            long millis = 0;
+            int[] recorded = null;
+            while (fill(channel, buffer)) {
+                try {
+                    int type = buffer.get();
+                    if (type == GameRecorder.GAME) {
+                        if (game != null) {
+                            results.accept(new Result(rows, cols, mines, seed, game, events, millis, recorded));
+                        }
+                        rows = getVarint(buffer);
+                        cols = getVarint(buffer);
+                        mines = getVarint(buffer);
+                        seed = buffer.getLong();
+                        if (game != null && game.getRows() == rows && game.getCols() == cols && game.getMines() == mines) {
+                            game.reset(seed);
+                        } else {
+                            game = new Minesweeper(rows, cols, mines, seed);
+                        }
+                        game.setMarkOption(buffer.get() != 0);
+                        events = 0;
+                        millis = 0;
+                        recorded = null;
+                        continue;
+                    }
+                    if (game == null) {
+                        throw new IOException(log + " is corrupt: events before the first game");
+                    }
+                    switch (type) {
+                        case GameRecorder.PLACED:
+                            millis += getVarint(buffer);
+                            game.setSeed(buffer.getLong());
+                            game.setSafeZone(ZONES[buffer.get()]);
+                            break;
+                        case GameRecorder.REVEAL:
+                        case GameRecorder.FLAG:
+                        case GameRecorder.CHORD:
+                            millis += getVarint(buffer);
+                            int index = getVarint(buffer);
+                            if (index < 0 || index >= rows * cols) {
+                                throw new IOException(log + " is corrupt: cell " + index + " is off the board");
+                            }
+                            int r = index / cols;
+                            int c = index % cols;
+                            if (type == GameRecorder.REVEAL) {
+                                game.reveal(r, c);
+                            } else if (type == GameRecorder.FLAG) {
+                                game.flag(r, c);
+                            } else {
+                                game.chord(r, c);
+                            }
+                            events++;
+                            break;
+                        case GameRecorder.MARKS:
+                            game.setMarkOption(buffer.get() != 0);
+                            break;
+                        case GameRecorder.END:
+                            millis += getVarint(buffer);
+                            recorded = new int[] {getVarint(buffer), getVarint(buffer), getVarint(buffer)};
+                            break;
+                        default:
+                            throw new IOException(log + " is corrupt: unknown event " + type);
+                    }
+                } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+                    throw new IOException(log + " is corrupt or truncated", e);
+                }
+            }
+            if (game != null) {
+                results.accept(new Result(rows, cols, mines, seed, game, events, millis, recorded));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean verbose = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> logs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-v":
+                        verbose = true;
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        Path path = Paths.get(args[i]);
+                        if (Files.isDirectory(path)) {
+                            try (Stream<Path> files = Files.list(path)) {
+                                logs.addAll(files.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                            }
+                        } else {
+                            logs.add(path);
+                        }
+                }
+            }
+            if (logs.isEmpty() || threads <= 0) {
+                throw new IllegalArgumentException("Need at least one log and one thread");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Tally>> tallies = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Path log : logs) {
+            boolean print = verbose;
+            tallies.add(pool.submit(() -> {
+                Tally tally = new Tally();
+                replay(log, result -> {
+                    tally.add(result);
+                    if (print) {
+                        System.out.println(log.getFileName() + ": " + result);
+                    }
+                });
+                return tally;
+            }));
+        }
+        Tally total = new Tally();
+        boolean failed = false;
+        for (int i = 0; i < tallies.size(); i++) {
+            try {
+                total.add(tallies.get(i).get());
+            } catch (ExecutionException e) {
+                System.err.println(logs.get(i) + ": " + e.getCause().getMessage());
+                failed = true;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d games (%d finished, %d won) from %d log%s, %d events in %.2f s: %.0f games/s, %.0f events/s%n",
+                total.games, total.finished, total.wins, logs.size(), logs.size() == 1 ? "" : "s", total.events,
+                seconds, total.games / seconds, total.events / seconds);
+        if (total.mismatches > 0) {
+            System.out.printf("%d game%s ended differently than recorded%n",
+                    total.mismatches, total.mismatches == 1 ? "" : "s");
+        }
+        if (failed || total.mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Make sure the buffer holds a whole record, reading more of the file if it doesn't.
+     * @return false if the file has ended
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() >= MAX_RECORD_BYTES) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < MAX_RECORD_BYTES) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    /**
+     * Counts of the games played back, one per file and then merged.
+     */
+    private static final class Tally {
+        private long games;
+        private long finished;
+        private long wins;
+        private long events;
+        private long mismatches;
+
+        void add(Result result) {
+            games++;
+            finished += result.isFinished() ? 1 : 0;
+            wins += result.getStatus() == Minesweeper.Status.WON ? 1 : 0;
+            events += result.getEvents();
+            mismatches += result.matches() ? 0 : 1;
+        }
+
+        void add(Tally other) {
+            games += other.games;
+            finished += other.finished;
+            wins += other.wins;
+            events += other.events;
+            mismatches += other.mismatches;
+        }
+    }
+}
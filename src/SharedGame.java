@@ -0,0 +1,296 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Cooperative game: one board that many players (threads, or clients of the {@link GameServer})
+ *  play on at the same time. Unlike {@link Minesweeper}, every method is thread-safe.
+ * <P> There are no locks. Cells live on an {@link AtomicBoard}, and revealing or flagging a cell
+ *     is a compare-and-set of its state, so when two players reveal the same cell exactly one of
+ *     them does it, and only that one counts it and cascades from it. The counters are
+ *     {@link LongAdder}s, so players on different cores don't fight over one counter either. </P>
+ * <P> The mines are placed when the game is made, keeping the start cell and its neighbours
+ *     clear; the first reveal should be there. Revealing a mine loses the game for everyone.
+ *     There is no cap on the number of flags, since checking it would need a lock. </P>
+ * @author huynhstin
+ */
+
+public final class SharedGame {
+    private final int rows;
+    private final int cols;
+    private final int mines;
+    private final long seed;
+    private final AtomicBoard board;
+    private final Neighbours neighbours;
+    private final long safeCells;
+    private final LongAdder revealed = new LongAdder();
+    private final LongAdder flags = new LongAdder();
+    private final AtomicReference<Minesweeper.Status> status = new AtomicReference<>(Minesweeper.Status.PLAYING);
+
+    /* Each player cascades on its own work stack. */
+    private final ThreadLocal<IntList> fillStacks = ThreadLocal.withInitial(IntList::new);
+
+    private volatile IntConsumer revealListener;
+
+    /**
+     * Make a game and place its mines.
+     * @param rows rows of the board
+     * @param cols cols of the board
+     * @param mines number of mines
+     * @param startRow row of the cell to start from, kept clear of mines with its neighbours
+     * @param startCol col of the cell to start from
+     * @param seed seed for mine placement
+     * @throws IllegalArgumentException if the board is empty, too big or can't hold the mines
+     */
+    public SharedGame(int rows, int cols, int mines, int startRow, int startCol, long seed) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A " + rows + "x" + cols + " board can't be indexed");
+        }
+        if (mines < 0 || mines >= (long) rows * cols) {
+            throw new IllegalArgumentException("Mines must be between 0 and the number of cells - 1");
+        }
+        if (startRow < 0 || startRow >= rows || startCol < 0 || startCol >= cols) {
+            throw new IllegalArgumentException("The start cell must be on the board");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.seed = seed;
+        board = new AtomicBoard(rows, cols);
+        neighbours = new Neighbours(rows, cols);
+
+        Random random = new Random(seed);
+        int placed;
+        if (rows * cols > Minesweeper.LARGE_BOARD_CELLS) {
+            placed = MinePlacer.stream(rows, cols, mines, startRow, startCol, MinePlacer.SafeZone.OPENING,
+                    random, this::placeMine);
+        } else {
+            int[] mineLocations = MinePlacer.place(rows, cols, mines, startRow, startCol,
+                    MinePlacer.SafeZone.OPENING, random);
+            for (int mineLocation : mineLocations) {
+                placeMine(mineLocation);
+            }
+            placed = mineLocations.length;
+        }
+        this.mines = placed;
+        safeCells = (long) rows * cols - placed;
+    }
+
+    private void placeMine(int index) {
+        board.makeMine(index);
+        for (int offset : neighbours.of(index)) {
+            board.increase(index + offset);
+        }
+    }
+
+    /**
+     * Reveal a cell, and everything connected to it if it is empty.
+     * @param r row
+     * @param c col
+     * @return how many cells this call revealed: 0 if the cell was already revealed (by anyone),
+     *          is flagged, is a mine, or the game is over
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public int reveal(int r, int c) {
+        checkBounds(r, c);
+        return reveal(board.index(r, c));
+    }
+
+    private int reveal(int index) {
+        if (status.get() != Minesweeper.Status.PLAYING) {
+            return 0;
+        }
+        if (board.isMine(index)) {
+            if (board.compareAndSetState(index, Cell.State.HIDDEN, Cell.State.REVEALED)) {
+                status.compareAndSet(Minesweeper.Status.PLAYING, Minesweeper.Status.LOST);
+            }
+            return 0;
+        }
+        if (!board.compareAndSetState(index, Cell.State.HIDDEN, Cell.State.REVEALED)) {
+            return 0;
+        }
+        notifyReveal(index);
+        int count = 1 + (board.getValue(index) == 0 ? floodFill(index) : 0);
+        count(count);
+        return count;
+    }
+
+    /**
+     * Chord: if a revealed number has exactly that many flags around it, reveal its other
+     *  neighbours. The flags are counted and the neighbours revealed one at a time, so
+     *  players changing flags around it at the same moment can change what is revealed.
+     * @param r row
+     * @param c col
+     * @return how many cells this call revealed
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public int chord(int r, int c) {
+        checkBounds(r, c);
+        int index = board.index(r, c);
+        int value = board.getValue(index);
+        if (status.get() != Minesweeper.Status.PLAYING || board.getState(index) != Cell.State.REVEALED || value <= 0) {
+            return 0;
+        }
+        int[] offsets = neighbours.of(r, c);
+        int around = 0;
+        for (int offset : offsets) {
+            if (board.getState(index + offset) == Cell.State.FLAGGED) {
+                around++;
+            }
+        }
+        if (around != value) {
+            return 0;
+        }
+        int count = 0;
+        for (int offset : offsets) {
+            count += reveal(index + offset);
+        }
+        return count;
+    }
+
+    /**
+     * Flag a hidden cell, or take the flag off a flagged one.
+     * @param r row
+     * @param c col
+     * @return whether the cell changed
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public boolean flag(int r, int c) {
+        checkBounds(r, c);
+        if (status.get() != Minesweeper.Status.PLAYING) {
+            return false;
+        }
+        int index = board.index(r, c);
+        if (board.compareAndSetState(index, Cell.State.HIDDEN, Cell.State.FLAGGED)) {
+            flags.increment();
+            return true;
+        }
+        if (board.compareAndSetState(index, Cell.State.FLAGGED, Cell.State.HIDDEN)) {
+            flags.decrement();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reveal every cell connected to the given empty cell. A cell is only taken by the player
+     *  whose compare-and-set reveals it, so two players cascading through the same opening
+     *  split it between them instead of both revealing it.
+     * @param start index of an empty cell this player just revealed
+     * @return how many more cells were revealed
+     */
+    private int floodFill(int start) {
+        IntList fillStack = fillStacks.get();
+        fillStack.clear();
+        fillStack.add(start);
+        int count = 0;
+        while (!fillStack.isEmpty()) {
+            int index = fillStack.pop();
+            for (int offset : neighbours.of(index)) {
+                int neighbour = index + offset;
+                if (!board.isMine(neighbour)
+                        && board.compareAndSetState(neighbour, Cell.State.HIDDEN, Cell.State.REVEALED)) {
+                    count++;
+                    notifyReveal(neighbour);
+                    if (board.getValue(neighbour) == 0) {
+                        fillStack.add(neighbour);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void notifyReveal(int index) {
+        IntConsumer listener = revealListener;
+        if (listener != null) {
+            listener.accept(index);
+        }
+    }
+
+    /**
+     * Count the cells a move revealed, and check whether that won the game.
+     */
+    private void count(int cells) {
+        revealed.add(cells);
+        // Whoever adds the last cells sees the full sum, since every other add came before theirs
+        if (revealed.sum() == safeCells) {
+            status.compareAndSet(Minesweeper.Status.PLAYING, Minesweeper.Status.WON);
+        }
+    }
+
+    private void checkBounds(int r, int c) {
+        if (r < 0 || r >= rows || c < 0 || c >= cols) {
+            throw new IndexOutOfBoundsException("(" + r + ", " + c + ") is off the " + rows + "x" + cols + " board");
+        }
+    }
+
+    /**
+     * Set the listener that is given the index of every safe cell as it is revealed, by the
+     *  thread that revealed it, so it must be thread-safe.
+     * @param revealListener listener, or null for none
+     */
+    void setRevealListener(IntConsumer revealListener) {
+        this.revealListener = revealListener;
+    }
+
+    AtomicBoard getBoard() {
+        return board;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * @return mines on the board
+     */
+    public int getMines() {
+        return mines;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Minesweeper.Status getStatus() {
+        return status.get();
+    }
+
+    /**
+     * @return the state of the cell
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public Cell.State getState(int r, int c) {
+        checkBounds(r, c);
+        return board.getState(board.index(r, c));
+    }
+
+    /**
+     * @return number of mines around a revealed cell, or -1 if the cell isn't revealed or is a mine
+     * @throws IndexOutOfBoundsException if the coordinates are off the board
+     */
+    public int getValue(int r, int c) {
+        checkBounds(r, c);
+        int index = board.index(r, c);
+        return board.getState(index) == Cell.State.REVEALED ? board.getValue(index) : -1;
+    }
+
+    /**
+     * @return safe cells revealed so far; exact once nobody is playing
+     */
+    public long getRevealed() {
+        return revealed.sum();
+    }
+
+    /**
+     * @return mines minus flags; can go below 0, since flags aren't capped
+     */
+    public long getFlagsLeft() {
+        return mines - flags.sum();
+    }
+}
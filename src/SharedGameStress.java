@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stress test for {@link SharedGame}: many threads clear one board together, and every
+ *  cell is checked afterwards to have been revealed exactly once. <br>
+ * Usage: {@code java -cp target/classes SharedGameStress [-t threads] [-b RxCxM] [-rounds n] [-seed seed]}
+ * <P> Every thread walks the board in the same order from its own starting point until the
+ *     game is won, so the threads keep running into each other. They reveal every safe cell, and flag and unflag
+ *     mines, which share their ints with safe cells on the {@link AtomicBoard}. (They don't
+ *     chord: a chord next to a mine being unflagged can rightly lose the game.)
+ *     A round passes if: the game is won; each safe cell reached the reveal listener exactly
+ *     once and no mine did; the cells each thread says it revealed add up to the safe cells
+ *     and to the game's counter; and the flag counter matches the flags on the board. </P>
+ * <P> Each round is run with 1, 2, 4... up to the given threads, reporting cells revealed per
+ *     second, to show how the throughput scales. The exit code is 1 if a round failed. </P>
+ * @author huynhstin
+ */
+
+public final class SharedGameStress {
+    private static final String USAGE = "Usage: SharedGameStress [-t threads] [-b RxCxM] [-rounds n] [-seed seed]";
+
+    private SharedGameStress() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int threads = Math.max(Runtime.getRuntime().availableProcessors(), 8);
+        int[] size = {2000, 2000, 600_000};
+        int rounds = 3;
+        long seed = System.nanoTime();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-b":
+                        String[] parts = args[++i].split("x");
+                        if (parts.length != 3) {
+                            throw new IllegalArgumentException("Board must be rows x cols x mines: " + args[i]);
+                        }
+                        size = new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+                        break;
+                    case "-rounds":
+                        rounds = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (threads <= 0 || rounds <= 0) {
+                throw new IllegalArgumentException("Threads and rounds must be positive");
+            }
+            new SharedGame(size[0], size[1], size[2], 0, 0, 0); // checks the size
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("%dx%d board with %d mines, %d round%s, seed %d%n",
+                size[0], size[1], size[2], rounds, rounds == 1 ? "" : "s", seed);
+        SplittableRandom random = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        boolean failed = false;
+        for (int round = 0; round < rounds; round++) {
+            for (int players = 1; players <= threads; players = players < threads ? Math.min(players * 2, threads) : players + 1) {
+                String problem = round(pool, size, players, random.split());
+                failed |= problem != null;
+                if (problem != null) {
+                    System.out.println("FAILED: " + problem);
+                }
+            }
+        }
+        pool.shutdown();
+        System.out.println(failed ? "FAILED" : "All rounds passed");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Clear one board with the given number of players and check it.
+     * @return what went wrong, or null if the round passed
+     */
+    private static String round(ExecutorService pool, int[] size, int players, SplittableRandom random)
+            throws InterruptedException, ExecutionException {
+        int rows = size[0];
+        int cols = size[1];
+        int cells = rows * cols;
+        SharedGame game = new SharedGame(rows, cols, size[2], rows / 2, cols / 2, random.nextLong());
+        AtomicBoard board = game.getBoard();
+        AtomicIntegerArray hits = new AtomicIntegerArray(cells);
+        game.setRevealListener(hits::incrementAndGet);
+
+        // One walk for everyone: a stride coprime with the number of cells visits each cell once
+        int stride = 1 + 2 * random.nextInt(cells / 2 + 1);
+        while (gcd(stride, cells) != 1) {
+            stride += 2;
+        }
+        int step = stride;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int p = 0; p < players; p++) {
+            long offset = random.nextInt(cells);
+            long playerSeed = random.nextLong();
+            results.add(pool.submit(() -> {
+                SplittableRandom own = new SplittableRandom(playerSeed);
+                start.await();
+                long revealed = game.reveal(rows / 2, cols / 2);
+                for (long i = 0; i < cells && game.getStatus() == Minesweeper.Status.PLAYING; i++) {
+                    int index = (int) ((offset + i * step) % cells);
+                    int r = index / cols;
+                    int c = index % cols;
+                    if (board.isMine(index)) {
+                        if (own.nextInt(4) == 0) {
+                            game.flag(r, c);
+                            game.flag(r, c);
+                        }
+                    } else {
+                        revealed += game.reveal(r, c);
+                    }
+                }
+                return revealed;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        long revealed = 0;
+        for (Future<Long> result : results) {
+            revealed += result.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        long safe = (long) cells - game.getMines();
+        System.out.printf("%3d player%s: %.2f s, %.1f M cells/s%n", players, players == 1 ? " " : "s",
+                seconds, safe / seconds / 1e6);
+        if (game.getStatus() != Minesweeper.Status.WON) {
+            return "game ended " + game.getStatus();
+        }
+        int flagged = 0;
+        for (int index = 0; index < cells; index++) {
+            int expected = board.isMine(index) ? 0 : 1;
+            if (hits.get(index) != expected) {
+                return "cell " + index + " was revealed " + hits.get(index) + " times";
+            }
+            if (board.getState(index) == Cell.State.FLAGGED) {
+                flagged++;
+            }
+        }
+        if (revealed != safe || game.getRevealed() != safe) {
+            return "players revealed " + revealed + " cells and the game counted "
+                    + game.getRevealed() + ", but there are " + safe;
+        }
+        if (game.getFlagsLeft() != game.getMines() - flagged) {
+            return "the game counts " + (game.getMines() - game.getFlagsLeft()) + " flags, but there are " + flagged;
+        }
+        return null;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
+
+/**
+ * Headless Monte-Carlo simulation: plays many games with a strategy on every core
+ *  and reports throughput, win rate, clicks and the 3BV distribution of the boards. <br>
+ * Usage: {@code java -cp target/classes Simulator [options]}
+ * <P> -n games (default 100000) <br>
+ *     -b beginner, intermediate, expert or rows x cols x mines such as 30x30x150 (default expert) <br>
+ *     -s random, solver or probability (default solver) <br>
+ *     -t threads (default one per core) <br>
+ *     -seed seed, for repeatable runs with the same thread count <br>
+ *     -opening keep the first click's neighbours free of mines <br>
+ *     -noguess only play boards that can be solved without guessing <br>
+ *     -3bv min-max with -noguess, only play boards whose 3BV is in the range <br>
+ *     -record dir log every game to a file per thread in the directory, see {@link Replayer} </P>
+ * <P> Strategies: random clicks random covered cells; solver clicks the middle, reveals
+ *     what the {@link Solver} proves safe and guesses at random when stuck; probability
+ *     does the same but guesses the cell {@link MineProbability} finds least likely to be a mine. </P>
+ * @author huynhstin
+ */
+
+public final class Simulator {
+    private static final String USAGE = "Usage: Simulator [-n games] [-b beginner|intermediate|expert|RxCxM]"
+            + " [-s random|solver|probability] [-t threads] [-seed seed] [-opening] [-noguess]"
+            + " [-3bv min-max] [-record dir]";
+
+    /**
+     * A way of playing a game to the end.
+     */
+    interface Strategy {
+        /**
+         * @param game a new game, not clicked yet
+         * @param random this thread's source of randomness
+         * @return how many cells were clicked
+         */
+        int play(Minesweeper game, SplittableRandom random);
+    }
+
+    private Simulator() {
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        long games = 100_000;
+        String boardName = "expert";
+        String strategyName = "solver";
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        boolean opening = false;
+        boolean noGuess = false;
+        int[] bbbvRange = null;
+        Path recordDir = null;
+        int[] size;
+        Strategy strategy;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-n":
+                        games = Long.parseLong(args[++i]);
+                        break;
+                    case "-b":
+                        boardName = args[++i];
+                        break;
+                    case "-s":
+                        strategyName = args[++i];
+                        break;
+                    case "-t":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "-opening":
+                        opening = true;
+                        break;
+                    case "-noguess":
+                        noGuess = true;
+                        break;
+                    case "-3bv":
+                        String[] range = args[++i].split("-");
+                        if (range.length != 2) {
+                            throw new IllegalArgumentException("3BV range must be min-max: " + args[i]);
+                        }
+                        bbbvRange = new int[] {Integer.parseInt(range[0]), Integer.parseInt(range[1])};
+                        break;
+                    case "-record":
+                        recordDir = Paths.get(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (games <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("Games and threads must be positive");
+            }
+            if (bbbvRange != null && !noGuess) {
+                throw new IllegalArgumentException("-3bv picks boards with the no-guess generator, so it needs -noguess");
+            }
+            size = board(boardName);
+            strategy = strategy(strategyName);
+            new Minesweeper(size[0], size[1], size[2]); // checks the size
+            if (recordDir != null) {
+                Files.createDirectories(recordDir);
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        MinePlacer.SafeZone zone = opening || noGuess ? MinePlacer.SafeZone.OPENING : MinePlacer.SafeZone.CELL;
+
+        System.out.printf("%s (%dx%d, %d mines), %s strategy%s, %d games on %d thread%s%n",
+                boardName, size[0], size[1], size[2], strategyName, noGuess ? ", no-guess boards" : "",
+                games, threads, threads == 1 ? "" : "s");
+
+        // Split the random streams up front so a seed gives the same games for the same thread count
+        SplittableRandom root = new SplittableRandom(seed);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Tally>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long share = games / threads + (t < games % threads ? 1 : 0);
+            SplittableRandom random = root.split();
+            boolean withNoGuess = noGuess;
+            int[] withRange = bbbvRange;
+            Path log = recordDir != null ? recordDir.resolve("games-" + t + ".mswl") : null;
+            results.add(pool.submit(() -> run(size, zone, withNoGuess, withRange, strategy, share, random, log)));
+        }
+        Tally total = new Tally();
+        for (Future<Tally> result : results) {
+            total.add(result.get());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        total.print(seconds);
+    }
+
+    /**
+     * Play one thread's share of the games.
+     * @param log file to record the games to, or null
+     */
+    private static Tally run(int[] size, MinePlacer.SafeZone zone, boolean noGuess, int[] bbbvRange,
+                             Strategy strategy, long games, SplittableRandom random, Path log) throws IOException {
+        Tally tally = new Tally();
+        NoGuessGenerator generator = noGuess ? new NoGuessGenerator(1, 10_000) : null;
+        if (bbbvRange != null) {
+            generator.setBbbvRange(bbbvRange[0], bbbvRange[1]);
+        }
+        Minesweeper game = new Minesweeper(size[0], size[1], size[2], random.nextLong());
+        game.setSafeZone(zone);
+        game.setNoGuess(generator);
+        GameRecorder recorder = log != null ? new GameRecorder(log) : null;
+        game.setRecorder(recorder);
+        for (long i = 0; i < games; i++) {
+            if (i > 0) {
+                game.reset(random.nextLong()); // reuse the board instead of allocating a new one
+            }
+            int clicks = strategy.play(game, random);
+            tally.record(game.getStatus() == Minesweeper.Status.WON, clicks, game.getStats());
+        }
+        if (generator != null) {
+            generator.shutdown();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        return tally;
+    }
+
+    /**
+     * @param name a preset name or rows x cols x mines
+     * @return {rows, cols, mines}
+     */
+    private static int[] board(String name) {
+        switch (name) {
+            case "beginner":
+                return new int[] {9, 9, 10};
+            case "intermediate":
+                return new int[] {16, 16, 40};
+            case "expert":
+                return new int[] {16, 30, 99};
+            default:
+                String[] parts = name.split("x");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Board must be a preset or rows x cols x mines: " + name);
+                }
+                return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        }
+    }
+
+    private static Strategy strategy(String name) {
+        switch (name) {
+            case "random":
+                return Simulator::playRandom;
+            case "solver":
+                return (game, random) -> playSolver(game, random, false);
+            case "probability":
+                return (game, random) -> playSolver(game, random, true);
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + name);
+        }
+    }
+
+    private static int playRandom(Minesweeper game, SplittableRandom random) {
+        Board board = game.getBoard();
+        int clicks = 0;
+        while (game.getStatus() == Minesweeper.Status.PLAYING) {
+            int index = randomCell(game, random, i -> board.getState(i) != Cell.State.REVEALED);
+            game.reveal(board.row(index), board.col(index));
+            clicks++;
+        }
+        return clicks;
+    }
+
+    private static int playSolver(Minesweeper game, SplittableRandom random, boolean guessByProbability) {
+        Board board = game.getBoard();
+        game.reveal(game.getRows() / 2, game.getCols() / 2);
+        int clicks = 1;
+        Solver solver = new Solver(game);
+        MineProbability probability = guessByProbability ? new MineProbability(game, solver) : null;
+        while (game.getStatus() == Minesweeper.Status.PLAYING) {
+            solver.solve();
+            int index = solver.nextSafe();
+            if (index < 0) {
+                if (probability != null) {
+                    probability.compute();
+                    index = probability.safest();
+                } else {
+                    index = randomCell(game, random, solver::isUnknown);
+                }
+            }
+            game.reveal(board.row(index), board.col(index));
+            clicks++;
+        }
+        return clicks;
+    }
+
+    /**
+     * Pick a random cell that passes the test: a few random tries, then a scan from a random start.
+     */
+    private static int randomCell(Minesweeper game, SplittableRandom random, IntPredicate test) {
+        int cells = game.getRows() * game.getCols();
+        for (int tries = 0; tries < 32; tries++) {
+            int index = random.nextInt(cells);
+            if (test.test(index)) {
+                return index;
+            }
+        }
+        int start = random.nextInt(cells);
+        for (int i = 0; i < cells; i++) {
+            int index = (start + i) % cells;
+            if (test.test(index)) {
+                return index;
+            }
+        }
+        throw new IllegalStateException("No cell left to click");
+    }
+
+    /**
+     * Results of some games, one per thread and then merged.
+     */
+    private static final class Tally {
+        private long games;
+        private long wins;
+        private long clicks;
+        private long winClicks;
+        private long openings;
+        private long isolatedNumbers;
+        private int[] bbbvCounts = new int[64]; // games by 3BV
+
+        void record(boolean won, int clicks, GameStats stats) {
+            int bbbv = stats.getBbbv();
+            games++;
+            this.clicks += clicks;
+            openings += stats.getOpenings();
+            isolatedNumbers += stats.getIsolatedNumbers();
+            if (won) {
+                wins++;
+                winClicks += clicks;
+            }
+            if (bbbv >= bbbvCounts.length) {
+                bbbvCounts = Arrays.copyOf(bbbvCounts, Math.max(bbbv + 1, bbbvCounts.length * 2));
+            }
+            bbbvCounts[bbbv]++;
+        }
+
+        void add(Tally other) {
+            games += other.games;
+            wins += other.wins;
+            clicks += other.clicks;
+            winClicks += other.winClicks;
+            openings += other.openings;
+            isolatedNumbers += other.isolatedNumbers;
+            if (other.bbbvCounts.length > bbbvCounts.length) {
+                bbbvCounts = Arrays.copyOf(bbbvCounts, other.bbbvCounts.length);
+            }
+            for (int i = 0; i < other.bbbvCounts.length; i++) {
+                bbbvCounts[i] += other.bbbvCounts[i];
+            }
+        }
+
+        void print(double seconds) {
+            System.out.printf("  %.2f s, %.0f games/s%n", seconds, games / seconds);
+            System.out.printf("  win rate %.2f%% (%d / %d)%n", 100.0 * wins / games, wins, games);
+            System.out.printf("  clicks per game %.1f, per won game %.1f%n",
+                    (double) clicks / games, wins == 0 ? 0 : (double) winClicks / wins);
+
+            int min = 0;
+            while (bbbvCounts[min] == 0) {
+                min++;
+            }
+            int max = bbbvCounts.length - 1;
+            while (bbbvCounts[max] == 0) {
+                max--;
+            }
+            long sum = 0;
+            for (int i = min; i <= max; i++) {
+                sum += (long) i * bbbvCounts[i];
+            }
+            System.out.printf("  3BV mean %.1f, min %d, median %d, 90th percentile %d, max %d%n",
+                    (double) sum / games, min, percentile(0.5), percentile(0.9), max);
+            System.out.printf("  openings per board %.1f, isolated numbers per board %.1f%n",
+                    (double) openings / games, (double) isolatedNumbers / games);
+
+            // Histogram in at most 20 buckets
+            int width = (max - min) / 20 + 1;
+            long biggest = 0;
+            long[] buckets = new long[(max - min) / width + 1];
+            for (int i = min; i <= max; i++) {
+                buckets[(i - min) / width] += bbbvCounts[i];
+            }
+            for (long bucket : buckets) {
+                biggest = Math.max(biggest, bucket);
+            }
+            for (int b = 0; b < buckets.length; b++) {
+                int from = min + b * width;
+                StringBuilder bar = new StringBuilder();
+                for (long i = 0; i < buckets[b] * 50 / biggest; i++) {
+                    bar.append('#');
+                }
+                System.out.printf("  %5d-%-5d %6.2f%% %s%n", from, from + width - 1,
+                        100.0 * buckets[b] / games, bar);
+            }
+        }
+
+        private int percentile(double fraction) {
+            long target = (long) Math.ceil(games * fraction);
+            long seen = 0;
+            for (int i = 0; i < bbbvCounts.length; i++) {
+                seen += bbbvCounts[i];
+                if (seen >= target) {
+                    return i;
+                }
+            }
+            return bbbvCounts.length - 1;
+        }
+    }
+}
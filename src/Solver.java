@@ -0,0 +1,339 @@
+/**
+ * Deduces safe cells and mines from what the player can see. <br>
+ * Only revealed numbers are used; the mine layout and the player's flags are never trusted.
+ * <P> The solver keeps the frontier (revealed numbers that still have unknown neighbours)
+ *     as a bitset, updated as the game reveals cells, and only re-examines frontier cells
+ *     whose neighbourhood changed. Two rules are applied: </P>
+ * <P> Single cell: if a number already touches as many known mines as it shows, its other
+ *     unknown neighbours are safe; if it needs as many mines as it has unknown neighbours,
+ *     they are all mines. <br>
+ *     Pairs: for two numbers within two cells of each other, their unknown neighbourhoods
+ *     are laid out as 7x7 bit masks. If the second number needs exactly as many more mines
+ *     than the first as it has cells the first doesn't touch, those cells are all mines and
+ *     the cells only the first touches are all safe (this covers the subset rule). </P>
+ * <P> Once every mine has been found, all remaining unknown cells are safe. </P>
+ * <P> Positions that need a guess can be handed to {@link MineProbability}. </P>
+ * @author huynhstin
+ */
+
+public final class Solver {
+    private static final byte UNKNOWN = 0;
+    private static final byte SAFE = 1;
+    private static final byte MINE = 2;
+
+    // Neighbour steps, in the order of the bits of unknownMask()
+    private static final int[] DR = Neighbours.DR;
+    private static final int[] DC = Neighbours.DC;
+    private static final int FRAME = 7; // pair masks are 7x7, centered on the first cell
+
+    private final Minesweeper game;
+    private final Board board;
+    private final Neighbours neighbours;
+    private final int rows;
+    private final int cols;
+
+    private final byte[] known;
+    private final long[] frontier;
+    private final long[] queued;
+    private final IntList queue = new IntList();
+    private final IntList safeFound = new IntList();
+    private final IntList minesFound = new IntList();
+    private int safeCursor = 0;
+    private boolean finished = false;
+
+    /**
+     * Attach a solver to a game. The solver follows the game's reveals from now on,
+     *  replacing any other reveal listener the game had.
+     * @param game game to solve
+     */
+    public Solver(Minesweeper game) {
+        this.game = game;
+        this.board = game.getBoard();
+        this.neighbours = game.getNeighbours();
+        this.rows = game.getRows();
+        this.cols = game.getCols();
+        known = new byte[rows * cols];
+        frontier = new long[(rows * cols + 63) >>> 6];
+        queued = new long[frontier.length];
+
+        for (int index = 0; index < rows * cols; index++) {
+            if (board.getState(index) == Cell.State.REVEALED) {
+                revealed(index);
+            }
+        }
+        game.setRevealListener(this::revealed);
+    }
+
+    /**
+     * Apply the rules until nothing more can be deduced.
+     * @return how many new safe cells and mines were found
+     */
+    public int solve() {
+        int before = safeFound.size() + minesFound.size();
+        do {
+            while (!queue.isEmpty()) {
+                int index = queue.pop();
+                clear(queued, index);
+                if (get(frontier, index)) {
+                    examine(index);
+                }
+            }
+        } while (allMinesFound());
+        return safeFound.size() + minesFound.size() - before;
+    }
+
+    /**
+     * Once every mine is accounted for, whatever is left is safe. Only scans the board once.
+     * @return whether this found anything new
+     */
+    private boolean allMinesFound() {
+        if (finished || minesFound.size() != game.getMines()) {
+            return false;
+        }
+        finished = true;
+        int before = safeFound.size();
+        for (int index = 0; index < rows * cols; index++) {
+            if (isUnknown(index)) {
+                deduce(index, SAFE);
+            }
+        }
+        return safeFound.size() != before;
+    }
+
+    /**
+     * @return index (r * cols + c) of a cell known to be safe that is still covered, or -1
+     */
+    public int nextSafe() {
+        while (safeCursor < safeFound.size()) {
+            int index = safeFound.get(safeCursor);
+            if (board.getState(index) != Cell.State.REVEALED) {
+                return index;
+            }
+            safeCursor++;
+        }
+        return -1;
+    }
+
+    /**
+     * Auto-play: keep revealing deduced safe cells until the game is over or
+     *  the position needs a guess.
+     * @return status of the game afterwards
+     */
+    public Minesweeper.Status play() {
+        while (game.getStatus() == Minesweeper.Status.PLAYING) {
+            solve();
+            int index = nextSafe();
+            if (index < 0) {
+                break;
+            }
+            game.reveal(board.row(index), board.col(index));
+        }
+        return game.getStatus();
+    }
+
+    public boolean isSafe(int r, int c) {
+        return known[r * cols + c] == SAFE || board.getState(r * cols + c) == Cell.State.REVEALED;
+    }
+
+    public boolean isMine(int r, int c) {
+        return known[r * cols + c] == MINE;
+    }
+
+    /**
+     * @return how many mines have been deduced so far
+     */
+    public int getMinesFound() {
+        return minesFound.size();
+    }
+
+    /**
+     * @return whether the cell is a revealed number that still has unknown neighbours
+     */
+    boolean isFrontier(int index) {
+        return get(frontier, index);
+    }
+
+    /**
+     * Add the index of every frontier cell to the given list, in index order.
+     * @param out list to add to
+     */
+    void collectFrontier(IntList out) {
+        for (int word = 0; word < frontier.length; word++) {
+            long bits = frontier[word];
+            while (bits != 0) {
+                out.add((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * @return whether the cell is covered and not yet deduced to be safe or a mine
+     */
+    boolean isUnknown(int index) {
+        return known[index] == UNKNOWN && board.getState(index) != Cell.State.REVEALED;
+    }
+
+    /**
+     * @return number of mines the revealed number at index still needs among its unknown neighbours
+     */
+    int need(int index) {
+        int need = board.getValue(index);
+        for (int offset : neighbours.of(index)) {
+            if (known[index + offset] == MINE) {
+                need--;
+            }
+        }
+        return need;
+    }
+
+    /**
+     * Called by the game for every cell it reveals.
+     */
+    private void revealed(int index) {
+        if (board.getValue(index) > 0) {
+            set(frontier, index);
+            enqueue(index);
+        }
+        enqueueNeighbours(index);
+    }
+
+    /**
+     * Try both rules on one frontier cell.
+     */
+    private void examine(int index) {
+        int r = index / cols;
+        int c = index % cols;
+        int mask = unknownMask(r, c);
+        if (mask == 0) {
+            clear(frontier, index);
+            return;
+        }
+
+        int need = need(index);
+        if (need == 0) {
+            deduceAll(r, c, mask, SAFE);
+            return;
+        }
+        if (need == Integer.bitCount(mask)) {
+            deduceAll(r, c, mask, MINE);
+            return;
+        }
+
+        long frameA = frame(r, c, r, c, mask);
+        for (int br = Math.max(r - 2, 0); br <= Math.min(r + 2, rows - 1); br++) {
+            for (int bc = Math.max(c - 2, 0); bc <= Math.min(c + 2, cols - 1); bc++) {
+                int other = br * cols + bc;
+                if (other == index || !get(frontier, other)) {
+                    continue;
+                }
+                int maskB = unknownMask(br, bc);
+                long frameB = frame(r, c, br, bc, maskB);
+                if ((frameA & frameB) == 0) {
+                    continue;
+                }
+                long onlyA = frameA & ~frameB;
+                long onlyB = frameB & ~frameA;
+                int diff = need(other) - need;
+                if (diff == Long.bitCount(onlyB)) {
+                    deduceFrame(r, c, onlyB, MINE);
+                    deduceFrame(r, c, onlyA, SAFE);
+                } else if (-diff == Long.bitCount(onlyA)) {
+                    deduceFrame(r, c, onlyA, MINE);
+                    deduceFrame(r, c, onlyB, SAFE);
+                } else {
+                    continue;
+                }
+                if (onlyA != 0 || onlyB != 0) {
+                    // the neighbourhood changed; this cell was queued again by deduce()
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return bit k is set if neighbour k (see DR, DC) is covered and not yet deduced
+     */
+    private int unknownMask(int r, int c) {
+        int index = r * cols + c;
+        int[] offsets = neighbours.of(r, c);
+        int[] directions = neighbours.directionsOf(r, c);
+        int mask = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (isUnknown(index + offsets[i])) {
+                mask |= 1 << directions[i];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Lay out the unknown neighbours of (r, c) in the 7x7 frame centered on (centerR, centerC).
+     */
+    private static long frame(int centerR, int centerC, int r, int c, int mask) {
+        long frame = 0;
+        for (int k = 0; k < 8; k++) {
+            if ((mask & (1 << k)) != 0) {
+                int fr = r + DR[k] - centerR + FRAME / 2;
+                int fc = c + DC[k] - centerC + FRAME / 2;
+                frame |= 1L << (fr * FRAME + fc);
+            }
+        }
+        return frame;
+    }
+
+    private void deduceAll(int r, int c, int mask, byte kind) {
+        for (int k = 0; k < 8; k++) {
+            if ((mask & (1 << k)) != 0) {
+                deduce((r + DR[k]) * cols + c + DC[k], kind);
+            }
+        }
+    }
+
+    private void deduceFrame(int centerR, int centerC, long frame, byte kind) {
+        while (frame != 0) {
+            int bit = Long.numberOfTrailingZeros(frame);
+            frame &= frame - 1;
+            int r = centerR + bit / FRAME - FRAME / 2;
+            int c = centerC + bit % FRAME - FRAME / 2;
+            deduce(r * cols + c, kind);
+        }
+    }
+
+    private void deduce(int index, byte kind) {
+        if (known[index] != UNKNOWN) {
+            return;
+        }
+        known[index] = kind;
+        (kind == SAFE ? safeFound : minesFound).add(index);
+        enqueueNeighbours(index);
+    }
+
+    private void enqueueNeighbours(int index) {
+        for (int offset : neighbours.of(index)) {
+            if (get(frontier, index + offset)) {
+                enqueue(index + offset);
+            }
+        }
+    }
+
+    private void enqueue(int index) {
+        if (!get(queued, index)) {
+            set(queued, index);
+            queue.add(index);
+        }
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+}
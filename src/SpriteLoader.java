@@ -9,11 +9,20 @@ import java.io.IOException;
 import java.net.URL;
 
 /**
- * Loads sprites for Minesweeper UI
+ * Loads sprites for Minesweeper UI. <br>
+ * The sprite sheets are decoded and sliced once per process;
+ *  everything shares the instance returned by {@link #get()}.
  * @author huynhstin
  */
 
-class SpriteLoader {
+final class SpriteLoader {
+    /**
+     * Holder idiom: the sheets are only read the first time {@link #get()} is called.
+     */
+    private static final class Holder {
+        private static final SpriteLoader INSTANCE = new SpriteLoader();
+    }
+
     private BufferedImage tileSheet;
     private BufferedImage numSheet;
     private BufferedImage faceSheet;
@@ -33,7 +42,7 @@ class SpriteLoader {
     private int[] numDimensions;
     private int[] faceDimensions;
 
-    SpriteLoader() {
+    private SpriteLoader() {
         try {
             URL tileURL = getClass().getClassLoader().getResource("sprites/tiles.png");
             URL numURL = getClass().getClassLoader().getResource("sprites/clock.png");
@@ -78,6 +87,13 @@ class SpriteLoader {
         loadFaceSprites();
     }
 
+    /**
+     * @return the shared sprite atlas
+     */
+    static SpriteLoader get() {
+        return Holder.INSTANCE;
+    }
+
     /**
      * Show an error message when a sprite file is missing.
      */
@@ -0,0 +1,218 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Flood fill that spreads one opening over the threads of a fork/join pool,
+ *  for boards where a single click can reveal millions of cells. <br>
+ * The board is cut into square tiles of {@link #TILE} cells a side, and each tile is only
+ *  ever written by one task at a time, so no locks or atomics are needed on the board.
+ * <P> The fill runs in rounds. In each round, every tile with work fills as far as it can
+ *     without leaving the tile, all tiles at once; a covered neighbour across the tile's edge
+ *     goes in the tile's outbox instead. Between rounds the outboxes are merged into the inboxes
+ *     of the tiles they fall in, which reveal those cells (if nobody did yet) and go on from them
+ *     in the next round. The fill ends when a round leaves nothing in any outbox. </P>
+ * <P> The pool only touches the board. The revealed cells are handed to the reveal listener and
+ *     the {@link DirtyRegion} on the calling thread once the whole opening is revealed, so the
+ *     UI never sees half of it. Reveals the same cells as {@link Minesweeper}'s own flood fill,
+ *     in a different order. </P>
+ * @author huynhstin
+ */
+
+final class TiledFloodFill {
+    static final int TILE = 128;
+
+    private final Board board;
+    private final Neighbours neighbours;
+    private final ForkJoinPool pool;
+    private final int rows;
+    private final int cols;
+    private final int tilesAcross;
+
+    /* Whether the tiles still list the cells they reveal. Only set between rounds, which the
+     fork/join tasks are ordered with. */
+    private boolean listing;
+
+    /**
+     * @param board board to fill
+     * @param neighbours neighbour tables for the board
+     * @param pool pool to fill on
+     */
+    TiledFloodFill(Board board, Neighbours neighbours, ForkJoinPool pool) {
+        this.board = board;
+        this.neighbours = neighbours;
+        this.pool = pool;
+        rows = board.getRows();
+        cols = board.getCols();
+        tilesAcross = (cols + TILE - 1) / TILE;
+    }
+
+    /**
+     * Reveal every cell connected to the given empty cell, stopping at numbered cells.
+     * @param start index of an empty, already revealed cell
+     * @param revealListener given every cell revealed, on this thread; may be null
+     * @param toPaint given the revealed cells, or the rectangles of the tiles they are in
+     *                 if there are more than {@link DirtyRegion#MAX_INDICES} of them
+     * @return how many cells were revealed, not counting the start cell
+     */
+    int fill(int start, IntConsumer revealListener, DirtyRegion toPaint) {
+        Map<Integer, Tile> tiles = new HashMap<>();
+        Tile first = tile(tiles, start);
+        first.stack.add(start);
+        listing = true;
+        pool.invoke(ForkJoinTask.adapt(() -> spread(tiles, first, revealListener != null)));
+
+        int count = 0;
+        for (Tile tile : tiles.values()) {
+            count += tile.count;
+            if (tile.count == 0) {
+                continue;
+            }
+            if (listing) {
+                for (int i = 0; i < tile.revealed.size(); i++) {
+                    int index = tile.revealed.get(i);
+                    toPaint.add(index);
+                    if (revealListener != null) {
+                        revealListener.accept(index);
+                    }
+                }
+            } else {
+                toPaint.addArea(tile.top, tile.left, tile.bottom, tile.right);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run rounds until the opening stops growing. Runs in the pool.
+     * @param keepListing whether the revealed cells must be listed however many there are
+     */
+    private void spread(Map<Integer, Tile> tiles, Tile first, boolean keepListing) {
+        List<Tile> active = new ArrayList<>();
+        active.add(first);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        long revealed = 0;
+        while (!active.isEmpty()) {
+            tasks.clear();
+            for (Tile tile : active) {
+                tasks.add(ForkJoinTask.adapt(tile::fill));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            List<Tile> next = new ArrayList<>();
+            for (Tile tile : active) {
+                revealed += tile.roundCount;
+                for (int i = 0; i < tile.outbox.size(); i++) {
+                    int index = tile.outbox.get(i);
+                    Tile owner = tile(tiles, index);
+                    if (owner.inbox.isEmpty()) {
+                        next.add(owner);
+                    }
+                    owner.inbox.add(index);
+                }
+                tile.outbox.clear();
+            }
+            // Past what the dirty region keeps anyway, stop listing cells nobody will look at
+            if (listing && !keepListing && revealed > DirtyRegion.MAX_INDICES) {
+                listing = false;
+                for (Tile tile : tiles.values()) {
+                    tile.revealed = new IntList();
+                }
+            }
+            active = next;
+        }
+    }
+
+    private Tile tile(Map<Integer, Tile> tiles, int index) {
+        int tileRow = board.row(index) / TILE;
+        int tileCol = board.col(index) / TILE;
+        return tiles.computeIfAbsent(tileRow * tilesAcross + tileCol, key -> new Tile(tileRow, tileCol));
+    }
+
+    /**
+     * @return whether the cell can still be revealed (it is hidden or marked)
+     */
+    private boolean isCovered(int index) {
+        Cell.State state = board.getState(index);
+        return state == Cell.State.HIDDEN || state == Cell.State.MARKED;
+    }
+
+    /**
+     * One tile of the board and its part of the fill.
+     */
+    private final class Tile {
+        private final int top;
+        private final int left;
+        private final int bottom;
+        private final int right;
+        private final IntList inbox = new IntList();
+        private final IntList outbox = new IntList();
+        private final IntList stack = new IntList();
+        private IntList revealed = new IntList();
+        private int count;
+        private int roundCount;
+
+        Tile(int tileRow, int tileCol) {
+            top = tileRow * TILE;
+            left = tileCol * TILE;
+            bottom = Math.min(top + TILE, rows) - 1;
+            right = Math.min(left + TILE, cols) - 1;
+        }
+
+        /**
+         * Reveal the cells in the inbox, and everything connected to them inside the tile.
+         */
+        void fill() {
+            roundCount = 0;
+            for (int i = 0; i < inbox.size(); i++) {
+                int index = inbox.get(i);
+                if (isCovered(index)) {
+                    reveal(index);
+                }
+            }
+            inbox.clear();
+            while (!stack.isEmpty()) {
+                int index = stack.pop();
+                int r = board.row(index);
+                int c = board.col(index);
+                int[] offsets = neighbours.of(r, c);
+                // Away from the tile's edges, every neighbour is in the tile
+                boolean inside = r > top && r < bottom && c > left && c < right;
+                int[] directions = inside ? null : neighbours.directionsOf(r, c);
+                for (int i = 0; i < offsets.length; i++) {
+                    int neighbour = index + offsets[i];
+                    // Other tiles may be revealing their cells right now: a cell read as revealed
+                    // really is, and one read as covered is checked again by its own tile
+                    if (!isCovered(neighbour) || board.isMine(neighbour)) {
+                        continue;
+                    }
+                    if (inside || contains(r + Neighbours.DR[directions[i]], c + Neighbours.DC[directions[i]])) {
+                        reveal(neighbour);
+                    } else {
+                        outbox.add(neighbour);
+                    }
+                }
+            }
+            count += roundCount;
+        }
+
+        private boolean contains(int r, int c) {
+            return r >= top && r <= bottom && c >= left && c <= right;
+        }
+
+        private void reveal(int index) {
+            board.setState(index, Cell.State.REVEALED);
+            roundCount++;
+            if (listing) {
+                revealed.add(index);
+            }
+            if (board.getValue(index) == 0) {
+                stack.add(index);
+            }
+        }
+    }
+}